@@ -0,0 +1,133 @@
+package com.codenjoy.clientrunner.benchmark;
+
+import com.codenjoy.clientrunner.service.Services;
+import com.codenjoy.clientrunner.service.facade.BuildContext;
+import com.codenjoy.clientrunner.service.facade.ContainerStats;
+import com.codenjoy.clientrunner.service.facade.DockerHost;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import com.codenjoy.clientrunner.service.facade.LogWriter;
+import com.github.dockerjava.api.model.HostConfig;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Docker stand-in which builds and runs everything instantly,
+ * so benchmarks can run without docker daemon.
+ */
+public class FakeDockerService extends DockerService {
+
+    private final AtomicInteger ids = new AtomicInteger();
+
+    public FakeDockerService() {
+        super(Services.dockerConfig());
+    }
+
+    @Override
+    public List<DockerHost> getHosts() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getHost(String id) {
+        return "fake";
+    }
+
+    @Override
+    public Closeable buildImage(BuildContext context, String serverUrl, LogWriter writer, Consumer<String> onCompete) {
+        writer.write("Step 1/1 : FROM openjdk:11-jre-slim\n");
+        writer.write("Successfully built fake\n");
+        writer.close();
+        onCompete.accept("image-" + ids.incrementAndGet());
+        // already built, nothing to stop
+        return () -> {};
+    }
+
+    @Override
+    public boolean hasRoom(String imageId) {
+        return true;
+    }
+
+    @Override
+    public boolean isImageExists(String imageId) {
+        return true;
+    }
+
+    @Override
+    public long getImageSize(String imageId) {
+        return 100L * 1024 * 1024;
+    }
+
+    @Override
+    public boolean removeImage(String imageId) {
+        return true;
+    }
+
+    @Override
+    public String createContainer(String imageId, HostConfig hostConfig) {
+        return "container-" + ids.incrementAndGet();
+    }
+
+    @Override
+    public String createIdleContainer(String imageId, HostConfig hostConfig) {
+        return createContainer(imageId, hostConfig);
+    }
+
+    @Override
+    public boolean claim(String containerId) {
+        return true;
+    }
+
+    @Override
+    public void startContainer(String containerId) {
+        // do nothing
+    }
+
+    @Override
+    public void logContainer(String containerId, LogWriter writer) {
+        writer.write("STDOUT: Got url from Environment");
+    }
+
+    @Override
+    public void attachContainer(String containerId, LogWriter writer) {
+        logContainer(containerId, writer);
+    }
+
+    @Override
+    public void waitContainer(String containerId, Runnable onComplete) {
+        // container is running forever
+    }
+
+    @Override
+    public boolean isContainerRunning(String containerId) {
+        return true;
+    }
+
+    @Override
+    public void killContainer(String containerId) {
+        // do nothing
+    }
+
+    @Override
+    public void removeContainer(String containerId) {
+        // do nothing
+    }
+
+    @Override
+    public boolean isOomKilled(String containerId) {
+        return false;
+    }
+
+    @Override
+    public void stats(String containerId, Consumer<ContainerStats> onStats) {
+        onStats.accept(new ContainerStats(12.5, 0, 64L * 1024 * 1024, 0));
+    }
+
+    @Override
+    public void followContainer(String containerId, LogWriter writer, long sinceMillis) {
+        writer.close();
+    }
+}
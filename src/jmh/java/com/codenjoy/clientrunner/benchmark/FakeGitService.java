@@ -0,0 +1,27 @@
+package com.codenjoy.clientrunner.benchmark;
+
+import com.codenjoy.clientrunner.service.Services;
+import com.codenjoy.clientrunner.service.facade.GitService;
+import lombok.SneakyThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Git stand-in which creates minimal java project instead of cloning.
+ */
+public class FakeGitService extends GitService {
+
+    public FakeGitService() {
+        super(Services.serviceConfig());
+    }
+
+    @Override
+    @SneakyThrows
+    public boolean clone(String repoURI, File directory) {
+        Files.createDirectories(directory.toPath().resolve("src"));
+        Files.writeString(directory.toPath().resolve("pom.xml"), "<project/>");
+        Files.writeString(directory.toPath().resolve("src/Main.java"), "class Main {}");
+        return true;
+    }
+}
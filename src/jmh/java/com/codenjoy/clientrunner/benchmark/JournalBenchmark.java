@@ -0,0 +1,82 @@
+package com.codenjoy.clientrunner.benchmark;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.Services;
+import com.codenjoy.clientrunner.service.SolutionJournal;
+import com.codenjoy.clientrunner.service.SolutionRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovery of solutions registry from journal after restart.
+ * Each solution is journaled with all its status changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JournalBenchmark {
+
+    private static final Solution.Status[] LIFECYCLE = {
+            Solution.Status.COMPILING, Solution.Status.RUNNING, Solution.Status.KILLED };
+
+    @Param({"100000"})
+    private int solutions;
+
+    private ClientServerServiceConfig config;
+    private SolutionJournal recovering;
+
+    @Setup
+    public void setup() throws Exception {
+        config = Services.serviceConfig();
+        config.getJournal().setPath(Files.createTempDirectory("benchmark-journal").toString());
+        config.getJournal().setCompactRecords(Integer.MAX_VALUE);
+
+        File sources = Files.createTempDirectory("benchmark").toFile();
+        new FakeGitService().clone(null, sources);
+        SolutionJournal journal = Services.solutionJournal(config, new SolutionRegistry());
+        for (int id = 1; id <= solutions; id++) {
+            int player = id % 1000;
+            Token token = Token.from(String.format(
+                    "http://127.0.0.1:8080/codenjoy-contest/board/player/%s?code=%s",
+                    player, player), Services.SERVER_REGEX);
+            Solution solution = Solution.cloning(token, sources);
+            solution.setId(id);
+            journal.save(solution);
+            solution.cloned();
+            journal.save(solution);
+            solution.setImageId("image" + id);
+            solution.setContainerId("container" + id);
+            for (Solution.Status status : LIFECYCLE) {
+                solution.setStatus(status);
+                journal.save(solution);
+            }
+            solution.finish();
+            journal.save(solution);
+        }
+        Services.shutdown(journal);
+        // load reads the file again every time, so one journal is enough
+        recovering = Services.solutionJournal(config, new SolutionRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        Services.shutdown(recovering);
+    }
+
+    @Benchmark
+    public SolutionRegistry recover() {
+        SolutionRegistry registry = new SolutionRegistry();
+        List<Solution> loaded = recovering.load();
+        loaded.forEach(registry::add);
+        return registry;
+    }
+}
@@ -0,0 +1,84 @@
+package com.codenjoy.clientrunner.benchmark;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.Services;
+import com.codenjoy.clientrunner.service.facade.LogFlusher;
+import com.codenjoy.clientrunner.service.facade.LogListener;
+import com.codenjoy.clientrunner.service.facade.LogReader;
+import com.codenjoy.clientrunner.service.facade.LogWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of log tail the way UI asks for it and appending of
+ * runtime log lines the way docker callback does it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LogBenchmark {
+
+    private static final String LINE = "STDOUT: Answer: ACT,LEFT [board: 3421 chars skipped]";
+    private static final int TAIL = 100;
+
+    @Param({"1000", "100000"})
+    private int lines;
+
+    private LogFlusher flusher;
+    private File log;
+    private LogWriter writer;
+
+    @Setup
+    public void setup() throws Exception {
+        flusher = Services.logFlusher(Services.serviceConfig());
+        Solution solution = solution();
+
+        LogWriter build = flusher.writer(solution, true, LogListener.NONE);
+        for (int line = 0; line < lines; line++) {
+            build.write(LINE + "\n");
+        }
+        build.close();
+        log = new File(solution.getSources() + LogWriter.BUILD_LOG);
+
+        writer = flusher.writer(solution, false, LogListener.NONE);
+    }
+
+    private Solution solution() throws Exception {
+        ClientServerServiceConfig config = Services.serviceConfig();
+        File sources = Files.createTempDirectory("benchmark").toFile();
+        new FakeGitService().clone(null, sources);
+        Token token = Token.from("http://127.0.0.1:8080/codenjoy-contest/board/player/0?code=0",
+                config.getServerRegex());
+        return Solution.from(token, sources);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        writer.close();
+        flusher.shutdown();
+    }
+
+    @Benchmark
+    public List<String> readTail() throws Exception {
+        return LogReader.read(log, lines - TAIL);
+    }
+
+    @Benchmark
+    public List<String> readAll() throws Exception {
+        return LogReader.read(log, 0);
+    }
+
+    @Benchmark
+    public void write() {
+        writer.write(LINE);
+    }
+}
@@ -0,0 +1,78 @@
+package com.codenjoy.clientrunner.benchmark;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.dto.SolutionSummary;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.Services;
+import com.codenjoy.clientrunner.service.SolutionManager;
+import com.codenjoy.clientrunner.service.facade.LogFlusher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of solutions when there are many players,
+ * each player has ten solutions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SolutionManagerBenchmark {
+
+    private static final int PER_PLAYER = 10;
+
+    @Param({"1000", "10000", "100000"})
+    private int solutions;
+
+    private LogFlusher flusher;
+    private SolutionManager manager;
+    private Token[] tokens;
+    private int[][] ids;
+
+    @Setup
+    public void setup() throws Exception {
+        ClientServerServiceConfig config = Services.serviceConfig();
+        flusher = Services.logFlusher(config);
+        manager = Services.solutionManager(config, new FakeDockerService(), flusher);
+
+        File sources = Files.createTempDirectory("benchmark").toFile();
+        new FakeGitService().clone(null, sources);
+
+        int players = solutions / PER_PLAYER;
+        tokens = new Token[players];
+        ids = new int[players][PER_PLAYER];
+        for (int player = 0; player < players; player++) {
+            tokens[player] = Token.from(String.format(
+                    "http://127.0.0.1:8080/codenjoy-contest/board/player/%s?code=%s",
+                    player, player), Services.SERVER_REGEX);
+            for (int index = 0; index < PER_PLAYER; index++) {
+                // previous player's solutions are killed on each run
+                ids[player][index] = manager.runSolution(tokens[player], sources);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        flusher.shutdown();
+    }
+
+    @Benchmark
+    public SolutionSummary getSolutionSummary() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int player = random.nextInt(tokens.length);
+        return manager.getSolutionSummary(tokens[player], ids[player][random.nextInt(PER_PLAYER)]);
+    }
+
+    @Benchmark
+    public List<SolutionSummary> getAllSolutionSummary() {
+        return manager.getAllSolutionSummary(tokens[ThreadLocalRandom.current().nextInt(tokens.length)]);
+    }
+}
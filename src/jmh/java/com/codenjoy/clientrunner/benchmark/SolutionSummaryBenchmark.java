@@ -0,0 +1,56 @@
+package com.codenjoy.clientrunner.benchmark;
+
+import com.codenjoy.clientrunner.dto.SolutionSummary;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.Services;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of player's solutions list as it is sent to UI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SolutionSummaryBenchmark {
+
+    @Param({"10", "100"})
+    private int solutions;
+
+    private ObjectMapper mapper;
+    private List<SolutionSummary> summaries;
+
+    @Setup
+    public void setup() throws Exception {
+        mapper = new ObjectMapper().findAndRegisterModules();
+
+        File sources = Files.createTempDirectory("benchmark").toFile();
+        new FakeGitService().clone(null, sources);
+        Token token = Token.from("http://127.0.0.1:8080/codenjoy-contest/board/player/0?code=0",
+                Services.SERVER_REGEX);
+
+        summaries = new ArrayList<>();
+        for (int id = 1; id <= solutions; id++) {
+            Solution solution = Solution.from(token, sources);
+            solution.setId(id);
+            solution.setStatus(Solution.Status.COMPILING);
+            solution.setStatus(Solution.Status.RUNNING);
+            summaries.add(new SolutionSummary(solution));
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(summaries);
+    }
+}
@@ -0,0 +1,54 @@
+package com.codenjoy.clientrunner.benchmark;
+
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.Services;
+import com.codenjoy.clientrunner.service.TokenResolver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of server URL as it happens on each UI poll,
+ * polling players are picked randomly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+public class TokenBenchmark {
+
+    @Param({"100", "1000"})
+    private int players;
+
+    private String[] serverUrls;
+    private TokenResolver resolver;
+
+    @Setup
+    public void setup() {
+        resolver = Services.tokenResolver(Services.serviceConfig());
+        serverUrls = new String[players];
+        for (int player = 0; player < players; player++) {
+            serverUrls[player] = String.format(
+                    "http://127.0.0.1:8080/codenjoy-contest/board/player/%s?code=%s",
+                    player, player);
+        }
+    }
+
+    private String serverUrl() {
+        return serverUrls[ThreadLocalRandom.current().nextInt(players)];
+    }
+
+    @Benchmark
+    public Token from() {
+        return Token.from(serverUrl(), Services.SERVER_REGEX);
+    }
+
+    @Benchmark
+    public Token resolve() {
+        return resolver.resolve(serverUrl());
+    }
+}
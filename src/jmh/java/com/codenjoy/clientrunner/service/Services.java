@@ -0,0 +1,182 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import com.codenjoy.clientrunner.service.facade.LogFlusher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.Collections;
+
+/**
+ * Wires services without Spring context with the same
+ * settings as in application.yml.
+ */
+public class Services {
+
+    public static final String SERVER_REGEX =
+            "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    public static ClientServerServiceConfig serviceConfig() {
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setServerRegex(SERVER_REGEX);
+
+        ClientServerServiceConfig.SolutionFolder solutionFolder = new ClientServerServiceConfig.SolutionFolder();
+        solutionFolder.setPath("./target/benchmark-solutions");
+        solutionFolder.setPattern("yyyy-MM-dd'_'HH-mm-ss");
+        config.setSolutionFolder(solutionFolder);
+
+        ClientServerServiceConfig.Retention retention = new ClientServerServiceConfig.Retention();
+        retention.setIntervalSec(300);
+        retention.setKeepPerPlayer(5);
+        retention.setMaxAgeMin(10080);
+        retention.setSizeLimitMB(10240);
+        config.setRetention(retention);
+
+        // solutions of previous benchmark runs are not restored
+        ClientServerServiceConfig.Journal journal = new ClientServerServiceConfig.Journal();
+        journal.setPath("");
+        journal.setCompactRecords(100000);
+        journal.setFsync(false);
+        config.setJournal(journal);
+
+        ClientServerServiceConfig.Tokens tokens = new ClientServerServiceConfig.Tokens();
+        tokens.setCacheSize(10000);
+        config.setTokens(tokens);
+
+        ClientServerServiceConfig.Players players = new ClientServerServiceConfig.Players();
+        players.setThreads(4);
+        config.setPlayers(players);
+
+        ClientServerServiceConfig.Debounce debounce = new ClientServerServiceConfig.Debounce();
+        debounce.setWindowMs(500);
+        config.setDebounce(debounce);
+
+        ClientServerServiceConfig.Scheduler scheduler = new ClientServerServiceConfig.Scheduler();
+        scheduler.setBuilds(4);
+        scheduler.setRuns(50);
+        scheduler.setPerPlayer(1);
+        scheduler.setQueue(1000);
+        config.setScheduler(scheduler);
+
+        ClientServerServiceConfig.Stream stream = new ClientServerServiceConfig.Stream();
+        stream.setThreads(4);
+        stream.setBuffer(1000);
+        stream.setTimeout(1800000);
+        config.setStream(stream);
+
+        ClientServerServiceConfig.Tail tail = new ClientServerServiceConfig.Tail();
+        tail.setLines(500);
+        tail.setMemoryLimitMB(64);
+        config.setTail(tail);
+
+        ClientServerServiceConfig.Logs logs = new ClientServerServiceConfig.Logs();
+        logs.setQueue(10000);
+        logs.setBufferSize(65536);
+        logs.setFlushIntervalMs(200);
+        logs.setWhenFull(ClientServerServiceConfig.Logs.WhenFull.BLOCK);
+        logs.setBlockTimeoutMs(1000);
+        logs.setCloseTimeoutMs(5000);
+        config.setLogs(logs);
+        return config;
+    }
+
+    public static DockerConfig dockerConfig() {
+        DockerConfig config = new DockerConfig();
+        config.setDockerfilesFolder("/dockerfiles");
+
+        DockerConfig.Container container = new DockerConfig.Container();
+        container.setMemoryLimitMB(0);
+        container.setCpuPeriod(100000);
+        container.setCpuQuota(-1);
+        config.setContainer(container);
+
+        DockerConfig.ImageCache imageCache = new DockerConfig.ImageCache();
+        imageCache.setCount(50);
+        imageCache.setSizeMB(10240);
+        config.setImageCache(imageCache);
+
+        DockerConfig.ImageReaper imageReaper = new DockerConfig.ImageReaper();
+        imageReaper.setIntervalSec(60);
+        imageReaper.setKeepPerPlayer(2);
+        imageReaper.setSizeLimitMB(20480);
+        imageReaper.setMaxAgeMin(1440);
+        config.setImageReaper(imageReaper);
+
+        DockerConfig.WarmPool warmPool = new DockerConfig.WarmPool();
+        warmPool.setSize(0);
+        warmPool.setIdleTimeoutSec(300);
+        config.setWarmPool(warmPool);
+
+        DockerConfig.Stats stats = new DockerConfig.Stats();
+        stats.setIntervalSec(5);
+        stats.setSamples(120);
+        config.setStats(stats);
+
+        DockerConfig.Hosts hosts = new DockerConfig.Hosts();
+        hosts.setUrls(Collections.emptyList());
+        hosts.setMaxContainers(0);
+        config.setHosts(hosts);
+        return config;
+    }
+
+    public static TokenResolver tokenResolver(ClientServerServiceConfig config) {
+        TokenResolver resolver = new TokenResolver(config);
+        resolver.init();
+        return resolver;
+    }
+
+    public static LogFlusher logFlusher(ClientServerServiceConfig config) {
+        LogFlusher flusher = new LogFlusher(config);
+        flusher.init();
+        return flusher;
+    }
+
+    public static SolutionJournal solutionJournal(ClientServerServiceConfig config,
+                                                 SolutionRegistry solutions)
+    {
+        SolutionJournal journal = new SolutionJournal(config, tokenResolver(config), solutions);
+        journal.init();
+        return journal;
+    }
+
+    public static void shutdown(SolutionJournal journal) {
+        journal.shutdown();
+    }
+
+    public static SolutionManager solutionManager(ClientServerServiceConfig config,
+                                                  DockerService docker, LogFlusher flusher)
+    {
+        LogTailCache tails = new LogTailCache(config);
+        SolutionEvents events = new SolutionEvents(config, tails);
+        events.init();
+
+        DockerConfig dockerConfig = dockerConfig();
+        ImageCache images = new ImageCache(dockerConfig, docker);
+        ImageReaper reaper = new ImageReaper(dockerConfig, docker, images);
+        reaper.init();
+        WarmPool pool = new WarmPool(dockerConfig, docker, images);
+        pool.init();
+        SolutionScheduler scheduler = new SolutionScheduler(config);
+        scheduler.init();
+
+        SolutionRegistry solutions = new SolutionRegistry();
+        ResourceSampler sampler = new ResourceSampler(dockerConfig, docker, solutions);
+        sampler.init();
+        SolutionJournal journal = solutionJournal(config, solutions);
+        SolutionReaper solutionReaper = new SolutionReaper(config, solutions, sampler, journal);
+        solutionReaper.init();
+
+        PlayerExecutor players = new PlayerExecutor(config);
+        RunnerMetrics metrics = new RunnerMetrics(new SimpleMeterRegistry(), solutions,
+                tokenResolver(config), images, reaper, pool, scheduler, flusher, tails,
+                solutionReaper, docker, players, new SubmissionDebouncer(config, players));
+        metrics.init();
+
+        SolutionManager manager = new SolutionManager(dockerConfig, docker, events,
+                tails, flusher, solutions, images, reaper, pool, scheduler, metrics, sampler,
+                journal);
+        manager.init();
+        return manager;
+    }
+}
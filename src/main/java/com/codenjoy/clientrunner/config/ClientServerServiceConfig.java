@@ -10,11 +10,110 @@ import org.springframework.context.annotation.Configuration;
 public class ClientServerServiceConfig {
 
     private SolutionFolder solutionFolder;
+    private Retention retention;
+    private Journal journal;
+    private Mirrors mirrors;
     private String serverRegex;
+    private Tokens tokens;
+    private Pipeline pipeline;
+    private Players players;
+    private Debounce debounce;
+    private Scheduler scheduler;
+    private Stream stream;
+    private Tail tail;
+    private Logs logs;
 
     @Data
     public static class SolutionFolder {
         private String path;
         private String pattern;
     }
+
+    @Data
+    public static class Retention {
+        private int intervalSec;
+        private int keepPerPlayer;
+        private int maxAgeMin;
+        private int sizeLimitMB;
+        private String archivePath;
+    }
+
+    @Data
+    public static class Journal {
+        private String path;
+        private int compactRecords;
+        private boolean fsync;
+    }
+
+    @Data
+    public static class Mirrors {
+        private String path;
+        private int sizeLimitMB;
+    }
+
+    @Data
+    public static class Tokens {
+        private int cacheSize;
+    }
+
+    @Data
+    public static class Pipeline {
+        private Stage clone;
+        private Stage prepare;
+        private Stage build;
+        private Stage run;
+
+        @Data
+        public static class Stage {
+            private int threads;
+            private int queue;
+        }
+    }
+
+    @Data
+    public static class Players {
+        private int threads;
+    }
+
+    @Data
+    public static class Debounce {
+        private long windowMs;
+    }
+
+    @Data
+    public static class Scheduler {
+        private int builds;
+        private int runs;
+        private int perPlayer;
+        private int queue;
+    }
+
+    @Data
+    public static class Stream {
+        private int threads;
+        private int buffer;
+        private long timeout;
+    }
+
+    @Data
+    public static class Tail {
+        private int lines;
+        private int memoryLimitMB;
+    }
+
+    @Data
+    public static class Logs {
+        private int queue;
+        private int bufferSize;
+        private long flushIntervalMs;
+        private WhenFull whenFull;
+        private long blockTimeoutMs;
+        private long closeTimeoutMs;
+        private boolean fsync;
+
+        public enum WhenFull {
+            BLOCK,
+            DROP
+        }
+    }
 }
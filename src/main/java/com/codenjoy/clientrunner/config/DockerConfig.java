@@ -5,6 +5,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import javax.validation.ValidationException;
+import java.util.List;
 
 @Data
 @Configuration
@@ -14,6 +15,44 @@ public class DockerConfig {
     public static final int MINIMAL_MEMORY_LIMIT = 6;
     private Container container;
     private String dockerfilesFolder;
+    private ImageCache imageCache;
+    private ImageReaper imageReaper;
+    private WarmPool warmPool;
+    private Stats stats;
+    private Hosts hosts;
+    private boolean blueGreen;
+
+    @Data
+    public static class Hosts {
+        private List<String> urls;
+        private int maxContainers;
+    }
+
+    @Data
+    public static class ImageCache {
+        private int count;
+        private int sizeMB;
+    }
+
+    @Data
+    public static class WarmPool {
+        private int size;
+        private int idleTimeoutSec;
+    }
+
+    @Data
+    public static class ImageReaper {
+        private int intervalSec;
+        private int keepPerPlayer;
+        private int sizeLimitMB;
+        private int maxAgeMin;
+    }
+
+    @Data
+    public static class Stats {
+        private int intervalSec;
+        private int samples;
+    }
 
     @Data
     public static class Container {
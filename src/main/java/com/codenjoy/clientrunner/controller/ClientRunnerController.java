@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.springframework.http.ResponseEntity.ok;
 import static org.springframework.http.ResponseEntity.status;
@@ -18,9 +19,8 @@ public class ClientRunnerController {
     private final ClientRunnerService service;
 
     @PostMapping("/check")
-    @ResponseStatus(HttpStatus.OK)
-    void checkNewSolution(@RequestBody CheckRequest request) {
-        service.checkSolution(request);
+    ResponseEntity<?> checkNewSolution(@RequestBody CheckRequest request) {
+        return ok(service.checkSolution(request));
     }
 
     @GetMapping("/stop")
@@ -39,6 +39,11 @@ public class ClientRunnerController {
         return ok(service.getSolutionSummary(serverUrl, solutionId));
     }
 
+    @GetMapping("/resources")
+    ResponseEntity<?> getResources(@RequestParam int solutionId, @RequestParam String serverUrl) {
+        return ok(service.getResources(serverUrl, solutionId));
+    }
+
     @GetMapping("/runtime_logs")
     ResponseEntity<?> getRuntimeLogs(@RequestParam int solutionId, @RequestParam String serverUrl,
                                      @RequestParam(defaultValue = "0") int offset) {
@@ -51,6 +56,14 @@ public class ClientRunnerController {
         return ok(service.getLogs(serverUrl, solutionId, LogType.BUILD, offset));
     }
 
+    @GetMapping("/stream")
+    SseEmitter stream(@RequestParam String serverUrl,
+                      @RequestParam(required = false) Integer solutionId,
+                      @RequestParam(required = false) LogType type,
+                      @RequestParam(defaultValue = "0") int offset) {
+        return service.subscribe(serverUrl, solutionId, type, offset);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     ResponseEntity<?> handleIllegalArgumentException(IllegalArgumentException ex) {
         return status(HttpStatus.NOT_FOUND).body(ex.getMessage());
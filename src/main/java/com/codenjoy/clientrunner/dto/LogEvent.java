@@ -0,0 +1,13 @@
+package com.codenjoy.clientrunner.dto;
+
+import com.codenjoy.clientrunner.model.LogType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class LogEvent {
+    private LogType type;
+    private long line;
+    private String text;
+}
@@ -0,0 +1,22 @@
+package com.codenjoy.clientrunner.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+import static com.fasterxml.jackson.annotation.JsonFormat.Shape.STRING;
+
+@Data
+@AllArgsConstructor
+public class ResourceSample {
+
+    @JsonFormat(shape = STRING, pattern = SolutionSummary.TIME_PATTERN)
+    private LocalDateTime time;
+
+    private double cpu;
+    private long throttledPeriods;
+    private long memory;
+    private long memoryLimitHits;
+}
@@ -0,0 +1,19 @@
+package com.codenjoy.clientrunner.dto;
+
+import lombok.Data;
+
+/**
+ * Last and peak values of sampled container resources.
+ */
+@Data
+public class ResourceUsage {
+
+    private int samples;
+    private double cpu;
+    private double cpuPeak;
+    private long throttledPeriods;
+    private long memory;
+    private long memoryPeak;
+    private long memoryLimitHits;
+    private boolean oomKilled;
+}
@@ -19,6 +19,19 @@ public class SolutionSummary {
 
     private int id;
     private String status;
+    private Integer queue;
+
+    /**
+     * Blue/green mode: solution which replaces this running one
+     * once its container is started.
+     */
+    private Integer pending;
+
+    /**
+     * Blue/green mode: running solution which keeps playing
+     * until this one is started.
+     */
+    private Integer active;
 
     @JsonFormat(shape = STRING, pattern = TIME_PATTERN)
     private LocalDateTime created;
@@ -29,6 +42,8 @@ public class SolutionSummary {
     @JsonFormat(shape = STRING, pattern = TIME_PATTERN)
     private LocalDateTime finished;
 
+    private ResourceUsage resources;
+
     public SolutionSummary(Solution solution) {
         created = solution.getCreated();
         finished = solution.getFinished();
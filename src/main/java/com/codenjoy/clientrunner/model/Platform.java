@@ -1,21 +1,30 @@
 package com.codenjoy.clientrunner.model;
 
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 
 import java.util.Arrays;
+import java.util.List;
 
-@RequiredArgsConstructor
 @Getter
 public enum Platform {
 
-    JAVA("pom.xml"),
-    NODEJS("package.json"),
-    RUBY("Gemfile"),
-    PYTHON("main.py");
+    JAVA("pom.xml", "target", "**/*.iml", "**/*.class"),
+    NODEJS("package.json", "**/node_modules", "npm-debug.log*"),
+    RUBY("Gemfile", ".bundle", "vendor/bundle"),
+    PYTHON("main.py", "**/__pycache__", "**/*.pyc", "venv", ".venv");
 
     private final String filename;
 
+    /**
+     * Paths never needed by platform Dockerfile, in .dockerignore format.
+     */
+    private final List<String> excludes;
+
+    Platform(String filename, String... excludes) {
+        this.filename = filename;
+        this.excludes = List.of(excludes);
+    }
+
     public static Platform of(String filename) {
         return Arrays.stream(Platform.values())
                 .filter(platform -> platform.getFilename().equals(filename))
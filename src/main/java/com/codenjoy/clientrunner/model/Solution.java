@@ -1,15 +1,24 @@
 package com.codenjoy.clientrunner.model;
 
 import lombok.*;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.Assert;
 
 import java.io.File;
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import static com.codenjoy.clientrunner.model.Solution.Status.*;
 
+@Slf4j
 @Getter
 @Setter
 @ToString
@@ -17,45 +26,88 @@ import static com.codenjoy.clientrunner.model.Solution.Status.*;
 public class Solution {
 
     private static final AtomicInteger idCounter = new AtomicInteger(0);
+    private static final AtomicReferenceFieldUpdater<Solution, Status> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(Solution.class, Status.class, "status");
+    private static final Map<Status, Set<Status>> TRANSITIONS = new EnumMap<>(Status.class);
+    private static final LongAdder rejected = new LongAdder();
+
+    static {
+        TRANSITIONS.put(CLONING, EnumSet.of(NEW, ERROR, KILLED));
+        TRANSITIONS.put(NEW, EnumSet.of(COMPILING, ERROR, KILLED));
+        TRANSITIONS.put(COMPILING, EnumSet.of(RUNNING, ERROR, KILLED));
+        TRANSITIONS.put(RUNNING, EnumSet.of(ERROR, KILLED));
+        TRANSITIONS.put(KILLED, EnumSet.of(FINISHED));
+        TRANSITIONS.put(FINISHED, EnumSet.noneOf(Status.class));
+        TRANSITIONS.put(ERROR, EnumSet.noneOf(Status.class));
+    }
 
     private final String playerId;
     private final String code;
     private final String serverUrl;
     private final File sources;
-    private final Platform platform;
+    @Setter(AccessLevel.NONE)
+    private Platform platform;
     private int id;
     private LocalDateTime created;
     private LocalDateTime started;
     private LocalDateTime finished;
     private String imageId;
-    private String containerId;
+    private volatile String containerId;
+    private String host;
+    @Setter(AccessLevel.NONE)
     private volatile Status status;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Consumer<Solution> listener;
 
-    private Solution(String playerId, String code, String serverUrl, File sources, Platform platform) {
+    private Solution(String playerId, String code, String serverUrl, File sources) {
         this.playerId = playerId;
         this.code = code;
         this.serverUrl = serverUrl;
-        this.status = NEW;
+        this.status = CLONING;
         this.sources = sources;
         this.created = LocalDateTime.now();
-        this.platform = platform;
     }
 
     public static Solution from(Token token, File sources) {
+        Solution solution = cloning(token, sources);
+        solution.cloned();
+        return solution;
+    }
+
+    /**
+     * Creates solution which sources are not cloned yet,
+     * so the platform will be detected later in {@link #cloned()}.
+     */
+    public static Solution cloning(Token token, File sources) {
         Assert.notNull(token, "Token can not be null");
         Assert.notNull(sources, "Sources can not be null");
+        return new Solution(token.getPlayerId(), token.getCode(),
+                token.getServerUrl(), sources);
+    }
+
+    /**
+     * Creates solution from its saved state, listener is not notified.
+     */
+    public static Solution restore(Token token, File sources, Platform platform, Status status) {
+        Solution solution = cloning(token, sources);
+        solution.platform = platform;
+        solution.status = status;
+        return solution;
+    }
+
+    public void cloned() {
         if (!sources.exists()) {
             throw new IllegalArgumentException("Source folder with path '" +
                     sources.getPath() + "' doesn't exist");
         }
-        Platform platform = detectPlatform(sources);
+        platform = detectPlatform(sources);
         if (platform == null) {
             throw new IllegalArgumentException(
                     String.format("Solution platform not supported " +
                             "for sources: '%s'", sources));
         }
-        return new Solution(token.getPlayerId(), token.getCode(),
-                token.getServerUrl(), sources, platform);
+        setStatus(NEW);
     }
 
     private static Platform detectPlatform(File sources) {
@@ -72,11 +124,48 @@ public class Solution {
         return null;
     }
 
-    public synchronized void setStatus(Status newStatus) {
-        if (newStatus == null || KILLED.equals(status)) {
-            return;
+    /**
+     * Changes status if the transition is allowed, concurrent changes
+     * are resolved by compare-and-set, so listener is notified once
+     * for each transition by the thread which made it.
+     *
+     * @return true if status was changed
+     */
+    public boolean setStatus(Status newStatus) {
+        while (true) {
+            Status old = status;
+            if (newStatus == null || old == newStatus) {
+                return false;
+            }
+            if (!old.canChangeTo(newStatus)) {
+                reject(old, newStatus);
+                return false;
+            }
+            if (STATUS.compareAndSet(this, old, newStatus)) {
+                notifyListener();
+                return true;
+            }
+        }
+    }
+
+    private void reject(Status old, Status newStatus) {
+        rejected.increment();
+        if (old.isActive()) {
+            log.warn("Solution with id: {} can not change status from {} to {}", id, old, newStatus);
+        } else {
+            // lost the race with kill or finish
+            log.debug("Solution with id: {} is already {}, status {} ignored", id, old, newStatus);
+        }
+    }
+
+    public static long getRejectedTransitions() {
+        return rejected.sum();
+    }
+
+    private void notifyListener() {
+        if (listener != null) {
+            listener.accept(this);
         }
-        status = newStatus;
     }
 
     public boolean allows(Token token) {
@@ -84,19 +173,35 @@ public class Solution {
                 && Objects.equals(code, token.getCode());
     }
 
-    public void finish() {
-        finished = LocalDateTime.now();
-
-        if (status.getStage() <= RUNNING.getStage()) {
-            status = ERROR;
-        } else if (status == KILLED) {
-            status = FINISHED;
+    /**
+     * Active solution becomes ERROR, killed one becomes FINISHED.
+     *
+     * @return true if status was changed
+     */
+    public boolean finish() {
+        while (true) {
+            Status old = status;
+            Status newStatus = old.isActive() ? ERROR
+                    : (old == KILLED) ? FINISHED : null;
+            if (newStatus == null) {
+                if (finished == null) {
+                    finished = LocalDateTime.now();
+                }
+                return false;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            if (STATUS.compareAndSet(this, old, newStatus)) {
+                finished = now;
+                notifyListener();
+                return true;
+            }
         }
     }
 
     @Getter
     @RequiredArgsConstructor
     public enum Status {
+        CLONING(true, 0),
         NEW(true, 0),
         COMPILING(true, 1),
         RUNNING(true, 2),
@@ -106,5 +211,9 @@ public class Solution {
 
         private final boolean active;
         private final int stage;
+
+        public boolean canChangeTo(Status status) {
+            return TRANSITIONS.get(this).contains(status);
+        }
     }
 }
@@ -20,12 +20,17 @@ public final class Token {
     public static Token from(String serverUrl, String urlPattern) {
         checkArgument(serverUrl != null, "Server URL must not be null");
         checkArgument(urlPattern != null, "URL pattern must not be null");
-        Pattern serverUrlPattern = Pattern.compile(urlPattern);
-        Matcher matcher = serverUrlPattern.matcher(serverUrl);
+        return from(serverUrl, Pattern.compile(urlPattern));
+    }
+
+    public static Token from(String serverUrl, Pattern urlPattern) {
+        checkArgument(serverUrl != null, "Server URL must not be null");
+        checkArgument(urlPattern != null, "URL pattern must not be null");
+        Matcher matcher = urlPattern.matcher(serverUrl);
         if (!matcher.matches()) {
             throw new IllegalArgumentException(
                     String.format("Given invalid server URL: '%s' " +
-                            "is not match '%s'", serverUrl, urlPattern));
+                            "is not match '%s'", serverUrl, urlPattern.pattern()));
         }
         return new Token(serverUrl, matcher.group(1), matcher.group(2));
     }
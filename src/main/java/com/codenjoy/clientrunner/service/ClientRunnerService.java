@@ -2,13 +2,14 @@ package com.codenjoy.clientrunner.service;
 
 import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
 import com.codenjoy.clientrunner.dto.CheckRequest;
+import com.codenjoy.clientrunner.dto.ResourceSample;
 import com.codenjoy.clientrunner.dto.SolutionSummary;
 import com.codenjoy.clientrunner.model.LogType;
 import com.codenjoy.clientrunner.model.Token;
-import com.codenjoy.clientrunner.service.facade.GitService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.time.LocalDateTime;
@@ -21,19 +22,14 @@ import java.util.List;
 public class ClientRunnerService {
 
     private final ClientServerServiceConfig config;
-    private final GitService git;
+    private final TokenResolver tokens;
+    private final SolutionPipeline pipeline;
     private final SolutionManager solutionManager;
 
-    public void checkSolution(CheckRequest request) {
+    public int checkSolution(CheckRequest request) {
         Token token = parse(request.getServerUrl());
         File directory = getSolutionDirectory(token);
-
-        // TODO: async
-        git.clone(request.getRepo(), directory)
-                .orElseThrow(() -> new IllegalArgumentException(
-                        "Can not clone repository: " + request.getRepo()));
-
-        solutionManager.runSolution(token, directory);
+        return pipeline.submit(token, request.getRepo(), directory);
     }
 
     public void killSolution(String serverUrl, int solutionId) {
@@ -51,13 +47,26 @@ public class ClientRunnerService {
         return solutionManager.getSolutionSummary(token, solutionId);
     }
 
+    public List<ResourceSample> getResources(String serverUrl, int solutionId) {
+        Token token = parse(serverUrl);
+        return solutionManager.getResources(token, solutionId);
+    }
+
     public List<String> getLogs(String serverUrl, int solutionId, LogType logType, int offset) {
         Token token = parse(serverUrl);
         return solutionManager.getLogs(token, solutionId, logType, offset);
     }
 
+    public SseEmitter subscribe(String serverUrl, Integer solutionId, LogType logType, int offset) {
+        Token token = parse(serverUrl);
+        if (solutionId == null) {
+            return solutionManager.subscribe(token);
+        }
+        return solutionManager.subscribe(token, solutionId, logType, offset);
+    }
+
     private Token parse(String serverUrl) {
-        return Token.from(serverUrl, config.getServerRegex());
+        return tokens.resolve(serverUrl);
     }
 
     private File getSolutionDirectory(Token token) {
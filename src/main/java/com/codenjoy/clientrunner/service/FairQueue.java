@@ -0,0 +1,214 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.model.Solution;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admits solutions to a limited number of slots. Waiting solutions are
+ * queued per player and players are served round robin, so one player
+ * submitting a lot can not starve the others. Each player also can not
+ * hold more than their own limit of slots at the same time.
+ */
+public class FairQueue {
+
+    private final String name;
+    private final int limit;
+    private final int perPlayer;
+    private final int capacity;
+    private final LinkedHashMap<String, Deque<Ticket>> waiting = new LinkedHashMap<>();
+    private final Map<Solution, String> holders = new IdentityHashMap<>();
+    private final Map<String, Integer> held = new HashMap<>();
+    private int size;
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    public FairQueue(String name, int limit, int perPlayer, int capacity) {
+        this.name = name;
+        this.limit = limit;
+        this.perPlayer = perPlayer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Runs the task (on the calling or releasing thread) when the solution
+     * gets the slot. The slot is held until {@link #release(Solution)}.
+     *
+     * @return false if there are too many waiting solutions
+     */
+    public boolean submit(Solution solution, Runnable task) {
+        synchronized (this) {
+            if (size >= capacity) {
+                return false;
+            }
+            waiting.computeIfAbsent(solution.getPlayerId(), player -> new ArrayDeque<>())
+                    .add(new Ticket(solution, task));
+            size++;
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Frees the slot of the solution or removes it from the queue.
+     */
+    public void release(Solution solution) {
+        synchronized (this) {
+            String player = holders.remove(solution);
+            if (player != null) {
+                held.computeIfPresent(player, (key, count) -> (count == 1) ? null : count - 1);
+            } else {
+                Deque<Ticket> tickets = waiting.get(solution.getPlayerId());
+                if (tickets == null || !tickets.removeIf(ticket -> ticket.solution == solution)) {
+                    return;
+                }
+                size--;
+                if (tickets.isEmpty()) {
+                    waiting.remove(solution.getPlayerId());
+                }
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Passes the slot of the solution to its replacement of the same
+     * player, so the replacement does not wait for a slot of its own.
+     * If the replacement already holds a slot, the old one is freed.
+     */
+    public void handover(Solution from, Solution to) {
+        synchronized (this) {
+            String player = holders.remove(from);
+            if (player == null) {
+                return;
+            }
+            if (holders.putIfAbsent(to, player) != null) {
+                held.computeIfPresent(player, (key, count) -> (count == 1) ? null : count - 1);
+            }
+        }
+        dispatch();
+    }
+
+    public synchronized boolean holds(Solution solution) {
+        return holders.containsKey(solution);
+    }
+
+    private void dispatch() {
+        List<Runnable> tasks = new ArrayList<>();
+        synchronized (this) {
+            Ticket ticket;
+            while (holders.size() < limit && (ticket = next()) != null) {
+                if (!ticket.solution.getStatus().isActive()) {
+                    continue;
+                }
+                String player = ticket.solution.getPlayerId();
+                holders.put(ticket.solution, player);
+                held.merge(player, 1, Integer::sum);
+                admitted.incrementAndGet();
+                waitNanos.addAndGet(System.nanoTime() - ticket.queuedAt);
+                tasks.add(ticket.task);
+            }
+        }
+        tasks.forEach(Runnable::run);
+    }
+
+    /**
+     * Takes the head of the first player who has a free slot,
+     * the player is moved to the end of the round.
+     */
+    private Ticket next() {
+        Iterator<Map.Entry<String, Deque<Ticket>>> iterator = waiting.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Deque<Ticket>> entry = iterator.next();
+            if (held.getOrDefault(entry.getKey(), 0) >= perPlayer) {
+                continue;
+            }
+            Deque<Ticket> tickets = entry.getValue();
+            Ticket ticket = tickets.poll();
+            size--;
+            iterator.remove();
+            if (!tickets.isEmpty()) {
+                waiting.put(entry.getKey(), tickets);
+            }
+            return ticket;
+        }
+        return null;
+    }
+
+    /**
+     * @return 1-based position of the solution in the queue
+     *         or 0 if it is not waiting
+     */
+    public synchronized int position(Solution solution) {
+        Deque<Ticket> tickets = waiting.get(solution.getPlayerId());
+        if (tickets == null) {
+            return 0;
+        }
+        int index = 0;
+        for (Ticket ticket : tickets) {
+            if (ticket.solution == solution) {
+                break;
+            }
+            index++;
+        }
+        if (index == tickets.size()) {
+            return 0;
+        }
+        // players are served one by one: everyone gets index turns
+        // before this one, players before it in the round get one more
+        int position = 1 + index;
+        boolean before = true;
+        for (Deque<Ticket> other : waiting.values()) {
+            if (other == tickets) {
+                before = false;
+                continue;
+            }
+            position += Math.min(other.size(), index);
+            if (before && other.size() > index) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getWaiting() {
+        return size;
+    }
+
+    public synchronized int getActive() {
+        return holders.size();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    /**
+     * @return average time solutions waited for the slot
+     */
+    public double getWaitMs() {
+        long count = admitted.get();
+        return (count == 0) ? 0 : waitNanos.get() / 1_000_000d / count;
+    }
+
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+    private static class Ticket {
+
+        private final Solution solution;
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        Ticket(Solution solution, Runnable task) {
+            this.solution = solution;
+            this.task = task;
+        }
+    }
+}
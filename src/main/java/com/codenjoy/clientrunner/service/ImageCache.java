@@ -0,0 +1,197 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.service.facade.BuildContext;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Built images keyed by hash of the build context (sources and platform
+ * Dockerfile) and server URL passed as build argument.
+ * Least recently used images are removed when count or size limit is exceeded.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageCache {
+
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+
+    private final DockerConfig config;
+    private final DockerService docker;
+    private final Map<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final List<Consumer<String>> removedListeners = new CopyOnWriteArrayList<>();
+    private long bytes;
+
+    public String key(BuildContext context, String serverUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(context.getDockerfile());
+            digest.update((byte) 0);
+            for (String name : context.getFiles()) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                try (InputStream in = new FileInputStream(new File(context.getSources(), name))) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+                digest.update((byte) 0);
+            }
+            digest.update(serverUrl.getBytes(StandardCharsets.UTF_8));
+            return toHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    public Optional<String> get(String key) {
+        Image image;
+        synchronized (images) {
+            image = images.get(key);
+        }
+        if (image != null && docker.isImageExists(image.id)) {
+            hits.incrementAndGet();
+            return Optional.of(image.id);
+        }
+        if (image != null) {
+            log.warn("Cached image {} was removed outside of the runner", image.id);
+            synchronized (images) {
+                if (images.remove(key, image)) {
+                    bytes -= image.size;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String key, String imageId) {
+        if (config.getImageCache().getCount() <= 0) {
+            return;
+        }
+        Image image;
+        try {
+            image = new Image(imageId, docker.getImageSize(imageId));
+        } catch (RuntimeException e) {
+            log.warn("Can not get size of image {}: {}", imageId, e.getMessage());
+            return;
+        }
+        List<Image> evicted = new ArrayList<>();
+        synchronized (images) {
+            Image previous = images.put(key, image);
+            if (previous != null) {
+                bytes -= previous.size;
+                if (!previous.id.equals(imageId)) {
+                    evicted.add(previous);
+                }
+            }
+            bytes += image.size;
+            Iterator<Image> iterator = images.values().iterator();
+            while (iterator.hasNext() && isOverLimit()) {
+                Image eldest = iterator.next();
+                if (eldest == image) {
+                    // just built image is going to be run, keep it anyway
+                    break;
+                }
+                iterator.remove();
+                bytes -= eldest.size;
+                evicted.add(eldest);
+            }
+        }
+        evicted.forEach(this::remove);
+    }
+
+    private boolean isOverLimit() {
+        return images.size() > config.getImageCache().getCount()
+                || bytes > config.getImageCache().getSizeMB() * BYTES_IN_MB;
+    }
+
+    /**
+     * Listener gets ids of evicted images which were removed from docker.
+     */
+    public void onRemoved(Consumer<String> listener) {
+        removedListeners.add(listener);
+    }
+
+    private void remove(Image image) {
+        try {
+            docker.removeImage(image.id);
+            removedListeners.forEach(listener -> listener.accept(image.id));
+        } catch (RuntimeException e) {
+            // image is still used by running container
+            log.warn("Can not remove cached image {}: {}", image.id, e.getMessage());
+        }
+    }
+
+    public boolean contains(String imageId) {
+        synchronized (images) {
+            return images.values().stream()
+                    .anyMatch(image -> image.id.equals(imageId));
+        }
+    }
+
+    public int size() {
+        synchronized (images) {
+            return images.size();
+        }
+    }
+
+    public long getBytes() {
+        synchronized (images) {
+            return bytes;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // for testing only
+    void clear() {
+        synchronized (images) {
+            images.clear();
+            bytes = 0;
+        }
+    }
+
+    private static class Image {
+
+        private final String id;
+        private final long size;
+
+        Image(String id, long size) {
+            this.id = id;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Removes images built by the runner when their solutions are not active:
+ * all but last images of each player, images older than max age and the
+ * oldest images when all of them exceed size limit. Images of active
+ * solutions and images kept in {@link ImageCache} are never removed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageReaper {
+
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+
+    private final DockerConfig config;
+    private final DockerService docker;
+    private final ImageCache cache;
+    private final Map<String, Image> images = new ConcurrentHashMap<>();
+    private final AtomicLong order = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("image-reaper-"));
+        // evicted from cache and removed there, nothing left to reap
+        cache.onRemoved(this::untrack);
+        long interval = config().getIntervalSec();
+        if (interval > 0) {
+            executor.scheduleWithFixedDelay(this::reap, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Remembers the image built (or taken from cache) for the solution.
+     */
+    public void track(Solution solution, String imageId) {
+        Image image = images.computeIfAbsent(imageId, Image::new);
+        image.solutions.removeIf(previous -> !previous.getStatus().isActive());
+        image.solutions.add(solution);
+        image.player = solution.getPlayerId();
+        image.usedAt = System.currentTimeMillis();
+        image.order = order.incrementAndGet();
+    }
+
+    private void untrack(String imageId) {
+        images.remove(imageId);
+    }
+
+    void reap() {
+        try {
+            for (Image image : expired()) {
+                remove(image);
+            }
+        } catch (Throwable e) {
+            log.error("Can not remove images", e);
+        }
+    }
+
+    private List<Image> expired() {
+        List<Image> all = new ArrayList<>(images.values());
+        all.sort(Comparator.comparingLong((Image image) -> image.order).reversed());
+
+        Set<Image> result = new LinkedHashSet<>();
+        long maxAge = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config().getMaxAgeMin());
+        all.stream()
+                .filter(image -> image.usedAt <= maxAge)
+                .forEach(result::add);
+
+        all.stream()
+                .collect(groupingBy(image -> image.player, LinkedHashMap::new, toList()))
+                .values().stream()
+                .flatMap(player -> player.stream().skip(config().getKeepPerPlayer()))
+                .forEach(result::add);
+
+        long limit = config().getSizeLimitMB() * BYTES_IN_MB;
+        long total = all.stream().mapToLong(this::size).sum()
+                - result.stream().filter(this::isRemovable).mapToLong(this::size).sum();
+        for (int i = all.size() - 1; i >= 0 && total > limit; i--) {
+            Image image = all.get(i);
+            if (isRemovable(image) && result.add(image)) {
+                total -= size(image);
+            }
+        }
+
+        return result.stream()
+                .filter(this::isRemovable)
+                .collect(toList());
+    }
+
+    private boolean isRemovable(Image image) {
+        return image.solutions.stream().noneMatch(solution -> solution.getStatus().isActive())
+                && !cache.contains(image.id);
+    }
+
+    private long size(Image image) {
+        if (image.size < 0) {
+            try {
+                image.size = docker.getImageSize(image.id);
+            } catch (RuntimeException e) {
+                // image was removed outside of the runner
+                image.size = 0;
+            }
+        }
+        return image.size;
+    }
+
+    private void remove(Image image) {
+        try {
+            boolean existed = docker.removeImage(image.id);
+            images.remove(image.id, image);
+            if (!existed) {
+                // removed outside of the runner, nothing reclaimed
+                return;
+            }
+            removed.incrementAndGet();
+            reclaimed.addAndGet(size(image));
+            log.debug("Image {} of player {} removed", image.id, image.player);
+        } catch (RuntimeException e) {
+            // container of the image is not removed yet
+            log.warn("Can not remove image {}: {}", image.id, e.getMessage());
+        }
+    }
+
+    public int size() {
+        return images.size();
+    }
+
+    public long getRemoved() {
+        return removed.get();
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimed.get();
+    }
+
+    private DockerConfig.ImageReaper config() {
+        return config.getImageReaper();
+    }
+
+    private static class Image {
+
+        private final String id;
+        private final List<Solution> solutions = new CopyOnWriteArrayList<>();
+        private volatile String player;
+        private volatile long usedAt;
+        private volatile long order;
+        private volatile long size = -1;
+
+        Image(String id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.LogType;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.service.facade.LogListener;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps last lines of every log of active solutions in memory,
+ * so tail reads don't touch the file system. Older lines
+ * should be read from the log file.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LogTailCache implements LogListener {
+
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+
+    // rough estimation of String object and array reference overhead
+    private static final int LINE_OVERHEAD = 56;
+
+    private final ClientServerServiceConfig config;
+    private final Map<Key, Ring> rings = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Override
+    public void onLine(Solution solution, LogType type, long line, String text) {
+        if (!solution.getStatus().isActive()) {
+            return;
+        }
+        Ring ring = rings.computeIfAbsent(new Key(solution.getId(), type),
+                key -> new Ring(config.getTail().getLines()));
+        bytes.addAndGet(ring.add(line, text));
+
+        if (bytes.get() > budget()) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    /**
+     * @return lines from offset or empty if these lines are not cached anymore
+     */
+    public Optional<List<String>> read(Solution solution, LogType type, int offset) {
+        Ring ring = rings.get(new Key(solution.getId(), type));
+        if (ring == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(ring.read(offset));
+    }
+
+    public void evict(Solution solution) {
+        Arrays.stream(LogType.values())
+                .forEach(type -> evict(new Key(solution.getId(), type)));
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    private void evict(Key key) {
+        Ring ring = rings.remove(key);
+        if (ring != null) {
+            bytes.addAndGet(-ring.evict());
+        }
+    }
+
+    private long budget() {
+        return config.getTail().getMemoryLimitMB() * BYTES_IN_MB;
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        Iterator<Key> keys = rings.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().used))
+                .map(Map.Entry::getKey)
+                .iterator();
+
+        while (bytes.get() > budget() && keys.hasNext()) {
+            Key key = keys.next();
+            log.debug("Log tail memory limit exceeded, evict: {}", key);
+            evict(key);
+        }
+    }
+
+    @Value
+    private static class Key {
+        int solutionId;
+        LogType type;
+    }
+
+    private static class Ring {
+
+        private final String[] lines;
+        private long first;
+        private long next;
+        private long bytes;
+        private boolean evicted;
+        private volatile long used;
+
+        Ring(int capacity) {
+            lines = new String[capacity];
+        }
+
+        /**
+         * @return change of used memory in bytes
+         */
+        synchronized long add(long line, String text) {
+            used = System.nanoTime();
+            long before = bytes;
+            if (evicted || line < first) {
+                return 0;
+            }
+            if (line > next) {
+                // lines were lost, start from scratch
+                clear();
+                first = next = line;
+            }
+            if (line == next) {
+                next++;
+                if (next - first > lines.length) {
+                    first++;
+                }
+            }
+            int index = index(line);
+            bytes -= size(lines[index]);
+            lines[index] = text;
+            bytes += size(text);
+            return bytes - before;
+        }
+
+        synchronized List<String> read(int offset) {
+            used = System.nanoTime();
+            if (offset < first) {
+                return null;
+            }
+            List<String> result = new ArrayList<>();
+            for (long line = offset; line < next; line++) {
+                result.add(lines[index(line)]);
+            }
+            return result;
+        }
+
+        /**
+         * @return released memory in bytes
+         */
+        synchronized long evict() {
+            evicted = true;
+            long result = bytes;
+            clear();
+            return result;
+        }
+
+        private void clear() {
+            Arrays.fill(lines, null);
+            bytes = 0;
+        }
+
+        private int index(long line) {
+            return (int) (line % lines.length);
+        }
+
+        private static long size(String text) {
+            return (text == null) ? 0 : LINE_OVERHEAD + 2L * text.length();
+        }
+    }
+}
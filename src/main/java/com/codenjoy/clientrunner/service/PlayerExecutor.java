@@ -0,0 +1,111 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Token;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks of one player (playerId + code) one by one in submission
+ * order, tasks of different players run in parallel on a bounded pool.
+ * Each task is chained after the previous one of the player, so
+ * {@link #execute(Token, Runnable)} only enqueues and the caller
+ * never runs or waits for the task.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PlayerExecutor {
+
+    private final ClientServerServiceConfig config;
+    private final Map<String, CompletableFuture<Void>> players = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newFixedThreadPool(config.getPlayers().getThreads(),
+                new CustomizableThreadFactory("player-"));
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void execute(Token token, Runnable task) {
+        String key = key(token);
+        long queuedAt = System.nanoTime();
+        CompletableFuture<?>[] chained = new CompletableFuture[1];
+        players.compute(key, (player, last) -> {
+            CompletableFuture<Void> previous = last;
+            if (previous == null) {
+                previous = CompletableFuture.completedFuture(null);
+            } else {
+                contended.increment();
+            }
+            // the next task runs whatever happened to the previous one
+            CompletableFuture<Void> next = previous.handleAsync((result, error) -> {
+                waitNanos.add(System.nanoTime() - queuedAt);
+                run(task);
+                return null;
+            }, executor);
+            chained[0] = next;
+            return next;
+        });
+        // player is released when its last task is done,
+        // registered outside compute as it can complete at once
+        CompletableFuture<?> next = chained[0];
+        next.whenComplete((result, error) -> players.remove(key, next));
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            log.error("Player task failed", e);
+        } finally {
+            executed.increment();
+        }
+    }
+
+    private static String key(Token token) {
+        return token.getPlayerId() + "/" + token.getCode();
+    }
+
+    public int getBusy() {
+        return players.size();
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * @return tasks which were queued behind another task of the player
+     */
+    public long getContended() {
+        return contended.sum();
+    }
+
+    /**
+     * @return time tasks waited for their turn and a free thread
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+}
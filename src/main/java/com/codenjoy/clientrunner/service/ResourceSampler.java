@@ -0,0 +1,223 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.dto.ResourceSample;
+import com.codenjoy.clientrunner.dto.ResourceUsage;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.service.facade.ContainerStats;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.codenjoy.clientrunner.model.Solution.Status.RUNNING;
+
+/**
+ * Samples docker stats of all running containers from one scheduled
+ * thread. Requests are asynchronous and one container has at most one
+ * request in flight, samples are kept in fixed size ring per solution.
+ * When the container stops the ring is dropped and only its summary is kept.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResourceSampler {
+
+    private final DockerConfig config;
+    private final DockerService docker;
+    private final SolutionRegistry solutions;
+    private final Map<Integer, Series> series = new ConcurrentHashMap<>();
+    private final Map<Integer, ResourceUsage> stopped = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("resource-sampler-"));
+        long interval = config().getIntervalSec();
+        if (interval > 0) {
+            executor.scheduleWithFixedDelay(this::sample, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void sample() {
+        try {
+            for (Solution solution : solutions.getAll()) {
+                if (solution.getStatus() == RUNNING && solution.getContainerId() != null) {
+                    sample(solution);
+                }
+            }
+        } catch (Throwable e) {
+            log.error("Can not sample containers", e);
+        }
+    }
+
+    private void sample(Solution solution) {
+        // solution is finished before it is stopped here, so the series
+        // removed by stopped() is not created again by the late sampling
+        Series data = series.compute(solution.getId(), (id, existing) ->
+                (existing != null || solution.getStatus() != RUNNING)
+                        ? existing
+                        : new Series(config().getSamples()));
+        if (data == null) {
+            return;
+        }
+        if (!data.pending.compareAndSet(false, true)) {
+            // docker has not answered previous request yet
+            return;
+        }
+        try {
+            docker.stats(solution.getContainerId(), stats -> {
+                if (stats != null) {
+                    data.add(System.currentTimeMillis(), stats);
+                }
+                data.pending.set(false);
+            });
+        } catch (RuntimeException e) {
+            data.pending.set(false);
+            log.debug("Can not get stats of container {}: {}", solution.getContainerId(), e.getMessage());
+        }
+    }
+
+    private Series series(Solution solution) {
+        return series.computeIfAbsent(solution.getId(), id -> new Series(config().getSamples()));
+    }
+
+    public void oomKilled(Solution solution) {
+        series(solution).oomKilled = true;
+    }
+
+    /**
+     * Drops samples of the stopped container, last and peak values are kept
+     * until the solution is evicted.
+     */
+    public void stopped(Solution solution) {
+        Series data = series.remove(solution.getId());
+        if (data != null) {
+            data.usage().ifPresent(usage -> stopped.put(solution.getId(), usage));
+        }
+    }
+
+    /**
+     * @return last and peak values, if solution was sampled
+     */
+    public Optional<ResourceUsage> usage(Solution solution) {
+        Series data = series.get(solution.getId());
+        if (data == null) {
+            return Optional.ofNullable(stopped.get(solution.getId()));
+        }
+        return data.usage();
+    }
+
+    /**
+     * @return samples of running container, empty when it is stopped
+     */
+    public List<ResourceSample> samples(Solution solution) {
+        return Optional.ofNullable(series.get(solution.getId()))
+                .map(Series::samples)
+                .orElse(Collections.emptyList());
+    }
+
+    public void evict(Solution solution) {
+        series.remove(solution.getId());
+        stopped.remove(solution.getId());
+    }
+
+    public int size() {
+        return series.size();
+    }
+
+    private DockerConfig.Stats config() {
+        return config.getStats();
+    }
+
+    private static class Series {
+
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private final long[] time;
+        private final float[] cpu;
+        private final long[] throttled;
+        private final long[] memory;
+        private final long[] limitHits;
+        private int next;
+        private int count;
+        private double cpuPeak;
+        private long memoryPeak;
+        private volatile boolean oomKilled;
+
+        Series(int capacity) {
+            time = new long[capacity];
+            cpu = new float[capacity];
+            throttled = new long[capacity];
+            memory = new long[capacity];
+            limitHits = new long[capacity];
+        }
+
+        synchronized void add(long now, ContainerStats stats) {
+            if (time.length == 0) {
+                return;
+            }
+            time[next] = now;
+            cpu[next] = (float) stats.getCpu();
+            throttled[next] = stats.getThrottledPeriods();
+            memory[next] = stats.getMemory();
+            limitHits[next] = stats.getMemoryLimitHits();
+            next = (next + 1) % time.length;
+            count = Math.min(count + 1, time.length);
+            cpuPeak = Math.max(cpuPeak, stats.getCpu());
+            memoryPeak = Math.max(memoryPeak, stats.getMemory());
+        }
+
+        synchronized Optional<ResourceUsage> usage() {
+            if (count == 0 && !oomKilled) {
+                return Optional.empty();
+            }
+            ResourceUsage result = new ResourceUsage();
+            result.setSamples(count);
+            result.setCpuPeak(cpuPeak);
+            result.setMemoryPeak(memoryPeak);
+            result.setOomKilled(oomKilled);
+            if (count > 0) {
+                int last = (next - 1 + time.length) % time.length;
+                result.setCpu(cpu[last]);
+                result.setThrottledPeriods(throttled[last]);
+                result.setMemory(memory[last]);
+                result.setMemoryLimitHits(limitHits[last]);
+            }
+            return Optional.of(result);
+        }
+
+        synchronized List<ResourceSample> samples() {
+            List<ResourceSample> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = (next - count + i + time.length) % time.length;
+                result.add(new ResourceSample(
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(time[index]), ZoneId.systemDefault()),
+                        cpu[index], throttled[index], memory[index], limitHits[index]));
+            }
+            return result;
+        }
+    }
+}
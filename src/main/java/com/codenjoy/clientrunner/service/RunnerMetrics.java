@@ -0,0 +1,253 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.model.LogType;
+import com.codenjoy.clientrunner.model.Platform;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.service.facade.DockerHost;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import com.codenjoy.clientrunner.service.facade.LogFlusher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the solution lifecycle, exported by actuator.
+ * Durations of clone, build, container create and start are recorded
+ * as timers. Counters kept by services themselves (log bytes, caches,
+ * queues) are only read when metrics are scraped, so hot paths
+ * like log writing do not touch the registry at all.
+ */
+@Service
+@RequiredArgsConstructor
+public class RunnerMetrics {
+
+    public static final String NONE = "none";
+    private static final long COUNTS_TTL = TimeUnit.SECONDS.toNanos(1);
+
+    private final MeterRegistry registry;
+    private final SolutionRegistry solutions;
+    private final TokenResolver tokens;
+    private final ImageCache images;
+    private final ImageReaper imageReaper;
+    private final WarmPool pool;
+    private final SolutionScheduler scheduler;
+    private final LogFlusher logs;
+    private final LogTailCache tails;
+    private final SolutionReaper solutionReaper;
+    private final DockerService docker;
+    private final PlayerExecutor players;
+    private final SubmissionDebouncer debouncer;
+
+    private volatile int[][] counts;
+    private volatile long countedAt;
+
+    @PostConstruct
+    protected void init() {
+        for (Solution.Status status : Solution.Status.values()) {
+            for (Platform platform : platforms()) {
+                Gauge.builder("runner.solutions", this, metrics -> metrics.count(status, platform))
+                        .description("Solutions in registry by status")
+                        .tags(Tags.of("status", status.name(), "platform", tag(platform)))
+                        .register(registry);
+            }
+        }
+
+        FunctionCounter.builder("runner.solutions.transitions.rejected", this,
+                        metrics -> Solution.getRejectedTransitions())
+                .description("Status changes rejected by solution state machine")
+                .register(registry);
+
+        for (LogType type : LogType.values()) {
+            for (Platform platform : platforms()) {
+                FunctionCounter.builder("runner.log.bytes", logs, flusher -> flusher.getWritten(type, platform))
+                        .description("Bytes written to solution logs")
+                        .baseUnit("bytes")
+                        .tags(Tags.of("type", type.name(), "platform", tag(platform)))
+                        .register(registry);
+            }
+        }
+        FunctionCounter.builder("runner.log.dropped", logs, LogFlusher::getDropped)
+                .description("Log chunks dropped because flusher queue was full")
+                .register(registry);
+        Gauge.builder("runner.log.tail.bytes", tails, LogTailCache::getBytes)
+                .baseUnit("bytes")
+                .register(registry);
+
+        FunctionCounter.builder("runner.tokens.cache", tokens, TokenResolver::getHits)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("runner.tokens.cache", tokens, TokenResolver::getMisses)
+                .tag("result", "miss")
+                .register(registry);
+
+        FunctionCounter.builder("runner.images.cache", images, ImageCache::getHits)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("runner.images.cache", images, ImageCache::getMisses)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("runner.images.cache.size", images, ImageCache::size)
+                .register(registry);
+        Gauge.builder("runner.images.cache.bytes", images, ImageCache::getBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("runner.images.removed", imageReaper, ImageReaper::getRemoved)
+                .register(registry);
+        FunctionCounter.builder("runner.images.reclaimed", imageReaper, ImageReaper::getReclaimedBytes)
+                .baseUnit("bytes")
+                .register(registry);
+
+        FunctionCounter.builder("runner.solutions.removed", solutionReaper, SolutionReaper::getRemoved)
+                .description("Finished solutions evicted from memory with their folders")
+                .register(registry);
+        FunctionCounter.builder("runner.solutions.reclaimed", solutionReaper, SolutionReaper::getReclaimedBytes)
+                .description("Disk space freed by removed solution folders")
+                .baseUnit("bytes")
+                .register(registry);
+
+        for (DockerHost host : docker.getHosts()) {
+            Gauge.builder("runner.docker.containers", host, placed -> placed.getContainers().get())
+                    .description("Containers placed on docker host")
+                    .tag("host", host.getName())
+                    .register(registry);
+            Gauge.builder("runner.docker.builds", host, placed -> placed.getBuilds().get())
+                    .description("Images being built on docker host")
+                    .tag("host", host.getName())
+                    .register(registry);
+        }
+        Gauge.builder("runner.containers.warm", pool, WarmPool::size)
+                .register(registry);
+        for (boolean warm : new boolean[]{true, false}) {
+            FunctionTimer.builder("runner.container.first.log", pool,
+                            containers -> containers.getStarts(warm),
+                            containers -> containers.getFirstLogNanos(warm),
+                            TimeUnit.NANOSECONDS)
+                    .description("Time from run to the first runtime log line")
+                    .tag("warm", String.valueOf(warm))
+                    .register(registry);
+        }
+
+        Gauge.builder("runner.players.busy", players, PlayerExecutor::getBusy)
+                .description("Players with submission in progress")
+                .register(registry);
+        FunctionCounter.builder("runner.players.tasks", players, PlayerExecutor::getExecuted)
+                .register(registry);
+        FunctionTimer.builder("runner.players.contended", players,
+                        PlayerExecutor::getContended, PlayerExecutor::getWaitNanos,
+                        TimeUnit.NANOSECONDS)
+                .description("Submissions queued behind another submission of the same player")
+                .register(registry);
+
+        FunctionCounter.builder("runner.submissions", debouncer, SubmissionDebouncer::getSubmitted)
+                .register(registry);
+        FunctionCounter.builder("runner.submissions.coalesced", debouncer, SubmissionDebouncer::getCoalesced)
+                .description("Submissions dropped for a newer one of the same player within debounce window")
+                .register(registry);
+        Gauge.builder("runner.submissions.pending", debouncer, SubmissionDebouncer::getPending)
+                .description("Players whose submission waits for debounce window")
+                .register(registry);
+
+        for (FairQueue queue : new FairQueue[]{scheduler.getBuilds(), scheduler.getRuns()}) {
+            Tags tags = Tags.of("queue", queue.getName());
+            Gauge.builder("runner.scheduler.waiting", queue, FairQueue::getWaiting)
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("runner.scheduler.active", queue, FairQueue::getActive)
+                    .tags(tags)
+                    .register(registry);
+            FunctionTimer.builder("runner.scheduler.wait", queue,
+                            FairQueue::getAdmitted, FairQueue::getWaitNanos,
+                            TimeUnit.NANOSECONDS)
+                    .description("Time solutions waited for build or run slot")
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+
+    private static Platform[] platforms() {
+        Platform[] values = Platform.values();
+        Platform[] result = new Platform[values.length + 1];
+        // the last one is null for solutions failed before platform is detected
+        System.arraycopy(values, 0, result, 0, values.length);
+        return result;
+    }
+
+    private static String tag(Platform platform) {
+        return (platform == null) ? NONE : platform.name();
+    }
+
+    /**
+     * Solutions are counted once per scrape, not per gauge.
+     */
+    private double count(Solution.Status status, Platform platform) {
+        long now = System.nanoTime();
+        int[][] result = counts;
+        if (result == null || now - countedAt > COUNTS_TTL) {
+            result = new int[Solution.Status.values().length][Platform.values().length + 1];
+            for (Solution solution : solutions.getAll()) {
+                Platform other = solution.getPlatform();
+                int index = (other == null) ? Platform.values().length : other.ordinal();
+                result[solution.getStatus().ordinal()][index]++;
+            }
+            counts = result;
+            countedAt = now;
+        }
+        int index = (platform == null) ? Platform.values().length : platform.ordinal();
+        return result[status.ordinal()][index];
+    }
+
+    /**
+     * @param stage clone or build of superseded solution stopped before completion
+     */
+    public void cancelled(String stage) {
+        Counter.builder("runner.solutions.cancelled")
+                .description("Work of superseded solutions stopped before completion")
+                .tag("stage", stage)
+                .register(registry)
+                .increment();
+    }
+
+    public void cloned(long nanos, boolean success) {
+        Timer.builder("runner.clone")
+                .description("Repository clone duration")
+                .tag("result", success ? "success" : "failed")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param result built, cached, failed or cancelled
+     */
+    public void built(Platform platform, String result, long nanos) {
+        Timer.builder("runner.build")
+                .description("Image build duration")
+                .tags(Tags.of("platform", tag(platform), "result", result))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void created(Platform platform, boolean warm, long nanos) {
+        Timer.builder("runner.container.create")
+                .description("Container create duration, warm ones are taken from pool")
+                .tags(Tags.of("platform", tag(platform), "warm", String.valueOf(warm)))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void started(Platform platform, long nanos) {
+        Timer.builder("runner.container.start")
+                .description("Container start duration")
+                .tag("platform", tag(platform))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
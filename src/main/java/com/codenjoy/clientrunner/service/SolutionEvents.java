@@ -0,0 +1,262 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.dto.LogEvent;
+import com.codenjoy.clientrunner.dto.SolutionSummary;
+import com.codenjoy.clientrunner.model.LogType;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.facade.LogListener;
+import com.codenjoy.clientrunner.service.facade.LogReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.web.servlet.mvc.method.annotation.SseEmitter.event;
+
+/**
+ * Pushes status transitions and new log lines to the subscribed browsers.
+ * Every subscriber has a bounded buffer: if the client can't keep up,
+ * it gets 'overflow' event and should reconnect from its last line.
+ * Backlog is read from {@link LogTailCache} first, the log file
+ * has only lines already flushed by {@link com.codenjoy.clientrunner.service.facade.LogFlusher}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SolutionEvents implements LogListener {
+
+    public static final String STATUS = "status";
+    public static final String LOG = "log";
+    public static final String OVERFLOW = "overflow";
+
+    private final ClientServerServiceConfig config;
+    private final LogTailCache tails;
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newFixedThreadPool(config.getStream().getThreads(),
+                new CustomizableThreadFactory("stream-"));
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public SseEmitter subscribe(Token token) {
+        return add(key(token.getPlayerId(), token.getCode()),
+                new Subscriber(null, null)).emitter;
+    }
+
+    public SseEmitter subscribe(Solution solution, LogType type, int offset) {
+        Subscriber subscriber = add(key(solution),
+                new Subscriber(solution.getId(), type));
+        subscriber.status(new SolutionSummary(solution));
+        if (type != null) {
+            subscriber.loaded(readLogs(solution, type, offset), offset);
+        }
+        return subscriber.emitter;
+    }
+
+    public void onStatus(Solution solution) {
+        Set<Subscriber> all = subscribers.get(key(solution));
+        if (all == null) {
+            return;
+        }
+        SolutionSummary summary = new SolutionSummary(solution);
+        all.stream()
+                .filter(subscriber -> subscriber.accepts(solution))
+                .forEach(subscriber -> subscriber.status(summary));
+    }
+
+    @Override
+    public void onLine(Solution solution, LogType type, long line, String text) {
+        Set<Subscriber> all = subscribers.get(key(solution));
+        if (all == null) {
+            return;
+        }
+        LogEvent event = new LogEvent(type, line, text);
+        all.stream()
+                .filter(subscriber -> subscriber.accepts(solution)
+                        && subscriber.type == type)
+                .forEach(subscriber -> subscriber.log(event));
+    }
+
+    private Subscriber add(String key, Subscriber subscriber) {
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+                .add(subscriber);
+        Runnable remove = () -> subscribers.computeIfPresent(key, (k, all) -> {
+            all.remove(subscriber);
+            return all.isEmpty() ? null : all;
+        });
+        subscriber.emitter.onCompletion(remove);
+        subscriber.emitter.onTimeout(remove);
+        subscriber.emitter.onError(error -> remove.run());
+        return subscriber;
+    }
+
+    public int getSubscribers() {
+        return subscribers.values().stream()
+                .mapToInt(Set::size)
+                .sum();
+    }
+
+    SseEmitter emitter() {
+        return new SseEmitter(config.getStream().getTimeout());
+    }
+
+    private List<String> readLogs(Solution solution, LogType type, int offset) {
+        if (!type.existsWhen(solution.getStatus())) {
+            return Collections.emptyList();
+        }
+        // published lines could be not flushed to the file yet
+        return tails.read(solution, type, offset)
+                .orElseGet(() -> readFile(solution, type, offset));
+    }
+
+    private List<String> readFile(Solution solution, LogType type, int offset) {
+        try {
+            return LogReader.read(new File(solution.getSources(), type.getFilename()), offset);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private String key(Solution solution) {
+        return key(solution.getPlayerId(), solution.getCode());
+    }
+
+    private String key(String playerId, String code) {
+        return playerId + "/" + code;
+    }
+
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Integer solutionId;
+        private final LogType type;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean overflow;
+        private volatile boolean closed;
+
+        // live lines received while backlog is read from file
+        private List<LogEvent> pending = new ArrayList<>();
+        private long next;
+
+        Subscriber(Integer solutionId, LogType type) {
+            this.emitter = emitter();
+            this.solutionId = solutionId;
+            this.type = type;
+            this.queue = new ArrayBlockingQueue<>(config.getStream().getBuffer());
+        }
+
+        boolean accepts(Solution solution) {
+            return solutionId == null || solutionId == solution.getId();
+        }
+
+        void status(SolutionSummary summary) {
+            offer(event().name(STATUS).data(summary));
+        }
+
+        synchronized void log(LogEvent event) {
+            if (pending != null) {
+                if (pending.size() < config.getStream().getBuffer()) {
+                    pending.add(event);
+                } else {
+                    overflow();
+                }
+                return;
+            }
+            // the last line could be read from file partially,
+            // so it may be sent again when completed
+            if (event.getLine() + 1 < next) {
+                return;
+            }
+            next = Math.max(next, event.getLine() + 1);
+            offer(event().name(LOG).data(event));
+        }
+
+        synchronized void loaded(List<String> lines, int offset) {
+            List<LogEvent> live = pending;
+            pending = null;
+            next = offset;
+            for (String line : lines) {
+                log(new LogEvent(type, next, line));
+            }
+            live.forEach(this::log);
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (overflow) {
+                return;
+            }
+            if (queue.offer(event)) {
+                schedule();
+            } else {
+                overflow();
+            }
+        }
+
+        private void overflow() {
+            // already buffered events will be sent before 'overflow',
+            // so the client always makes progress after reconnect
+            overflow = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            if (closed) {
+                return;
+            }
+            try {
+                SseEmitter.SseEventBuilder event;
+                while ((event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+                if (overflow) {
+                    closed = true;
+                    emitter.send(event().name(OVERFLOW).data(next));
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Subscriber disconnected: {}", e.getMessage());
+                closed = true;
+                queue.clear();
+                emitter.completeWithError(e);
+            } finally {
+                scheduled.set(false);
+            }
+            if (!closed && (overflow || !queue.isEmpty())) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Platform;
+import com.codenjoy.clientrunner.model.Solution;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Append-only journal of solution states, one JSON line per change.
+ * The last record of each solution wins when the journal is loaded.
+ * Records are written by one background thread: status listeners only
+ * put them to the queue, the thread writes everything queued at once
+ * and flushes (or forces) the file once per batch.
+ * After the configured number of records, but not before it has twice
+ * as many records as live solutions, the same thread rewrites the journal
+ * with current solutions from {@link SolutionRegistry}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SolutionJournal {
+
+    public static final String FILENAME = "solutions.journal";
+
+    private static final long POLL_MS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final ClientServerServiceConfig config;
+    private final TokenResolver tokens;
+    private final SolutionRegistry solutions;
+    // not bounded, records are small and must not be dropped
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private Thread thread;
+    private volatile boolean running;
+    // fields below are used by the journal thread only
+    private File file;
+    private FileOutputStream out;
+    private Writer lines;
+    private volatile long records;
+    // solutions in the journal after load or the last compaction
+    private long live;
+
+    @PostConstruct
+    protected void init() {
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        writer = mapper.writerFor(Record.class);
+        reader = mapper.readerFor(Record.class);
+        if (!isEnabled()) {
+            return;
+        }
+        file = new File(config().getPath(), FILENAME);
+        running = true;
+        thread = new Thread(this::loop, "solution-journal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queued records are written before the thread stops.
+     */
+    @PreDestroy
+    protected void shutdown() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isEnabled() {
+        String path = config().getPath();
+        return path != null && !path.isEmpty();
+    }
+
+    /**
+     * @return solutions in the last saved state, ordered by id
+     */
+    public List<Solution> load() {
+        if (thread == null) {
+            return Collections.emptyList();
+        }
+        List<Record> last = new ArrayList<>();
+        call(() -> last.addAll(read()));
+
+        List<Solution> result = new ArrayList<>(last.size());
+        for (Record record : last) {
+            try {
+                result.add(record.toSolution(tokens));
+            } catch (RuntimeException e) {
+                log.warn("Can not restore solution with id: {}: {}", record.getId(), e.getMessage());
+            }
+        }
+        result.sort(Comparator.comparingInt(Solution::getId));
+        return result;
+    }
+
+    private Collection<Record> read() {
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, Record> last = new HashMap<>();
+        records = 0;
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), UTF_8), 64 * 1024))
+        {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                records++;
+                Record record;
+                try {
+                    record = reader.readValue(line);
+                } catch (IOException e) {
+                    // the last line may be cut by crash
+                    log.warn("Skip broken journal record: {}", e.getMessage());
+                    continue;
+                }
+                if (record.isRemoved()) {
+                    last.remove(record.getId());
+                } else {
+                    last.put(record.getId(), record);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Can not read solutions journal {}", file, e);
+        }
+        live = last.size();
+        return last.values();
+    }
+
+    public void save(Solution solution) {
+        append(Record.of(solution));
+    }
+
+    public void remove(Solution solution) {
+        Record record = new Record();
+        record.setId(solution.getId());
+        record.setRemoved(true);
+        append(record);
+    }
+
+    private void append(Record record) {
+        if (thread == null) {
+            return;
+        }
+        // the state is taken now, the thread could write it later
+        queue.add(new Entry(record, null));
+    }
+
+    /**
+     * Runs the task in the journal thread after everything queued before it
+     * is written and waits for it.
+     */
+    private void call(Runnable task) {
+        Entry entry = new Entry(null, task);
+        queue.add(entry);
+        try {
+            entry.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void loop() {
+        List<Entry> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    process(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                log.error("Can not write solutions journal {}", file, e);
+                // callers of not processed tasks should not wait forever
+                batch.forEach(entry -> entry.done.completeExceptionally(e));
+                batch.clear();
+            }
+        }
+        close();
+    }
+
+    private void process(List<Entry> batch) {
+        for (Entry entry : batch) {
+            if (entry.task == null) {
+                write(entry.record);
+                continue;
+            }
+            flush();
+            try {
+                entry.task.run();
+                entry.done.complete(null);
+            } catch (RuntimeException e) {
+                entry.done.completeExceptionally(e);
+            }
+        }
+        flush();
+        // otherwise with many live solutions it is compacted after each batch
+        if (records >= Math.max(config().getCompactRecords(), 2 * live)) {
+            compactNow();
+        }
+    }
+
+    private void write(Record record) {
+        try {
+            if (lines == null) {
+                open();
+            }
+            write(lines, record);
+            records++;
+        } catch (IOException e) {
+            log.error("Can not write solutions journal {}", file, e);
+            close();
+        }
+    }
+
+    private void flush() {
+        if (lines == null) {
+            return;
+        }
+        try {
+            lines.flush();
+            if (config().isFsync()) {
+                out.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            log.error("Can not write solutions journal {}", file, e);
+            close();
+        }
+    }
+
+    private void write(Writer lines, Record record) throws IOException {
+        lines.write(writer.writeValueAsString(record));
+        lines.write('\n');
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        out = new FileOutputStream(file, true);
+        lines = new BufferedWriter(new OutputStreamWriter(out, UTF_8), 64 * 1024);
+    }
+
+    private void close() {
+        if (lines == null) {
+            return;
+        }
+        try {
+            lines.close();
+        } catch (IOException e) {
+            log.warn("Can not close solutions journal {}", file, e);
+        }
+        lines = null;
+        out = null;
+    }
+
+    /**
+     * Rewrites the journal with the current state of all solutions.
+     */
+    void compact() {
+        if (thread != null) {
+            call(this::compactNow);
+        }
+    }
+
+    /**
+     * Waits until everything queued before is written.
+     */
+    void flushQueued() {
+        if (thread != null) {
+            call(() -> {});
+        }
+    }
+
+    private void compactNow() {
+        try {
+            File temp = new File(file.getParentFile(), FILENAME + ".tmp");
+            Files.createDirectories(file.getParentFile().toPath());
+            long count = 0;
+            try (FileOutputStream stream = new FileOutputStream(temp);
+                 Writer compacted = new BufferedWriter(new OutputStreamWriter(stream, UTF_8), 64 * 1024))
+            {
+                for (Solution solution : solutions.getAll()) {
+                    write(compacted, Record.of(solution));
+                    count++;
+                }
+                compacted.flush();
+                stream.getChannel().force(false);
+            }
+            close();
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = count;
+            live = count;
+            log.debug("Solutions journal compacted to {} records", count);
+        } catch (IOException e) {
+            log.error("Can not compact solutions journal {}", file, e);
+        }
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    private ClientServerServiceConfig.Journal config() {
+        return config.getJournal();
+    }
+
+    @Data
+    public static class Record {
+
+        private int id;
+        private boolean removed;
+        private String serverUrl;
+        private String sources;
+        private Platform platform;
+        private Solution.Status status;
+        private LocalDateTime created;
+        private LocalDateTime started;
+        private LocalDateTime finished;
+        private String imageId;
+        private String containerId;
+        private String host;
+
+        static Record of(Solution solution) {
+            Record result = new Record();
+            result.setId(solution.getId());
+            result.setServerUrl(solution.getServerUrl());
+            result.setSources(solution.getSources().getPath());
+            result.setPlatform(solution.getPlatform());
+            result.setStatus(solution.getStatus());
+            result.setCreated(solution.getCreated());
+            result.setStarted(solution.getStarted());
+            result.setFinished(solution.getFinished());
+            result.setImageId(solution.getImageId());
+            result.setContainerId(solution.getContainerId());
+            result.setHost(solution.getHost());
+            return result;
+        }
+
+        Solution toSolution(TokenResolver tokens) {
+            Solution result = Solution.restore(tokens.resolve(serverUrl),
+                    new File(sources), platform, status);
+            result.setId(id);
+            result.setCreated(created);
+            result.setStarted(started);
+            result.setFinished(finished);
+            result.setImageId(imageId);
+            result.setContainerId(containerId);
+            result.setHost(host);
+            return result;
+        }
+    }
+
+    private static class Entry {
+
+        private final Record record;
+        private final Runnable task;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(Record record, Runnable task) {
+            this.record = record;
+            this.task = task;
+        }
+    }
+}
@@ -1,31 +1,39 @@
 package com.codenjoy.clientrunner.service;
 
 import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.dto.ResourceSample;
 import com.codenjoy.clientrunner.dto.SolutionSummary;
 import com.codenjoy.clientrunner.exception.SolutionNotFoundException;
 import com.codenjoy.clientrunner.model.LogType;
 import com.codenjoy.clientrunner.model.Solution;
 import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.facade.BuildContext;
+import com.codenjoy.clientrunner.service.facade.DockerIgnore;
 import com.codenjoy.clientrunner.service.facade.DockerService;
+import com.codenjoy.clientrunner.service.facade.LogFlusher;
+import com.codenjoy.clientrunner.service.facade.LogListener;
+import com.codenjoy.clientrunner.service.facade.LogReader;
 import com.codenjoy.clientrunner.service.facade.LogWriter;
 import com.github.dockerjava.api.model.HostConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.PostConstruct;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
 import static com.codenjoy.clientrunner.model.Solution.Status.*;
 import static java.util.stream.Collectors.toList;
@@ -35,12 +43,24 @@ import static java.util.stream.Collectors.toList;
 @RequiredArgsConstructor
 public class SolutionManager {
 
-    public static final String DOCKERFILE = "Dockerfile";
     private final AtomicInteger idGenerator = new AtomicInteger(0);
     private final DockerConfig config;
     private HostConfig hostConfig;
     private final DockerService docker;
-    private final Set<Solution> solutions = ConcurrentHashMap.newKeySet();
+    private final SolutionEvents events;
+    private final LogTailCache tails;
+    private final LogFlusher logs;
+    private final SolutionRegistry solutions;
+    private final ImageCache images;
+    private final ImageReaper reaper;
+    private final WarmPool pool;
+    private final SolutionScheduler scheduler;
+    private final RunnerMetrics metrics;
+    private final ResourceSampler sampler;
+    private final SolutionJournal journal;
+    private final Map<String, byte[]> dockerfiles = new ConcurrentHashMap<>();
+    private final Map<Integer, Closeable> builds = new ConcurrentHashMap<>();
+    private LogListener logListener;
 
     @PostConstruct
     protected void init() {
@@ -48,38 +68,245 @@ public class SolutionManager {
                 .withCpuPeriod(config.getContainer().getCpuPeriod())
                 .withCpuQuota(config.getContainer().getCpuQuota())
                 .withMemory(config.getContainer().getMemoryLimitBytes());
+        logListener = tails.andThen(events);
+        journal.load().forEach(this::restore);
+    }
+
+    /**
+     * Brings back the solution saved before restart. Running container
+     * is followed again, solutions interrupted in other stages are failed.
+     */
+    private void restore(Solution solution) {
+        solution.setListener(this::onStatusChanged);
+        solutions.add(solution);
+        idGenerator.accumulateAndGet(solution.getId(), Math::max);
+        if (!solution.getStatus().isActive()) {
+            return;
+        }
+        try {
+            if (solution.getStatus() != RUNNING || solution.getContainerId() == null) {
+                fail(solution, "Runner was restarted, please submit the solution again");
+                return;
+            }
+            if (solution.getImageId() != null) {
+                reaper.track(solution, solution.getImageId());
+            }
+            if (solution.getHost() != null) {
+                docker.assign(solution.getContainerId(), solution.getHost());
+            }
+            if (!docker.isContainerRunning(solution.getContainerId())) {
+                cleanupSolution(solution);
+                return;
+            }
+            log.info("Solution with id: {} is still running in container {}",
+                    solution.getId(), solution.getContainerId());
+            // occupies run slot until container is finished
+            scheduler.run(solution, () -> {});
+            File runtime = new File(solution.getSources(), LogType.RUNTIME.getFilename());
+            docker.followContainer(solution.getContainerId(),
+                    logs.writer(solution, false, logListener), runtime.lastModified());
+            docker.waitContainer(solution.getContainerId(),
+                    () -> cleanupSolution(solution));
+        } catch (RuntimeException e) {
+            log.error("Can not restore solution with id: {}", solution.getId(), e);
+            fail(solution, "Runner was restarted, please submit the solution again");
+        }
+    }
+
+    private void onStatusChanged(Solution solution) {
+        if (!solution.getStatus().isActive()) {
+            cancelBuild(solution);
+            tails.evict(solution);
+            scheduler.finished(solution);
+        }
+        journal.save(solution);
+        events.onStatus(solution);
     }
 
     public int runSolution(Token token, File sources) {
-        getSolutions(token).forEach(this::kill);
+        Solution solution = register(token, sources);
+        if (supersede(token, solution) && prepare(solution)) {
+            build(solution, imageId -> runContainer(solution, imageId));
+        }
+        return solution.getId();
+    }
 
-        Solution solution = Solution.from(token, sources);
+    public Solution register(Token token, File sources) {
+        Solution solution = Solution.cloning(token, sources);
         solution.setId(idGenerator.incrementAndGet());
+        solution.setListener(this::onStatusChanged);
         solutions.add(solution);
+        journal.save(solution);
+        events.onStatus(solution);
+        return solution;
+    }
 
-        /* TODO: try to avoid copy Dockerfile.
-            https://docs.docker.com/engine/api/v1.41/#operation/ImageBuild */
-        addDockerfile(solution);
+    /**
+     * Kills other solutions of the player, so only the last registered
+     * one keeps running whatever order concurrent submissions come in.
+     * In blue/green mode running solution is killed later in
+     * {@link #swap(Solution)}, when the new container is started.
+     *
+     * @return false if newer solution is registered, so this one is killed
+     */
+    public boolean supersede(Token token, Solution solution) {
+        boolean newest = true;
+        for (Solution other : getSolutions(token)) {
+            if (other.getId() < solution.getId()) {
+                if (!keepsPlaying(other)) {
+                    kill(other);
+                }
+            } else if (other.getId() > solution.getId()) {
+                newest = false;
+            }
+        }
+        if (!newest) {
+            kill(solution);
+        }
+        return newest;
+    }
 
-        // TODO this is multithreading crunch, to use synchronized section
-        if (!solution.getStatus().isActive()) {
-            log.debug("Attempt to run inactive solution with id: {} and status: {}",
+    private boolean keepsPlaying(Solution solution) {
+        return config.isBlueGreen() && solution.getStatus() == RUNNING;
+    }
+
+    /**
+     * @return running solution which keeps playing until the container
+     *         of the given one is started, in blue/green mode only
+     */
+    public Optional<Solution> getActive(Solution pending) {
+        return getSolutions(pending).stream()
+                .filter(other -> other.getId() < pending.getId() && keepsPlaying(other))
+                .reduce((older, newer) -> newer);
+    }
+
+    /**
+     * @return newest solution which is prepared to replace the given
+     *         running one, in blue/green mode only
+     */
+    private Optional<Solution> getPending(Solution active) {
+        return getSolutions(active).stream()
+                .filter(other -> other.getId() > active.getId()
+                        && other.getStatus().isActive() && other.getStatus() != RUNNING)
+                .reduce((older, newer) -> newer);
+    }
+
+    /**
+     * Older running solutions of the player are stopped only now, when
+     * the new container is started, their run slot is taken over.
+     * If they exited before, there is nothing to take over, so the slot
+     * is taken in turn like after restart and the runs limit still holds.
+     */
+    private void swap(Solution solution) {
+        for (Solution other : getSolutions(solution)) {
+            if (other.getId() < solution.getId() && other.getStatus() == RUNNING) {
+                log.info("Solution with id: {} is replaced by solution with id: {}",
+                        other.getId(), solution.getId());
+                scheduler.handover(other, solution);
+                kill(other);
+            }
+        }
+        if (config.isBlueGreen() && !scheduler.holdsRun(solution)) {
+            // occupies run slot until container is finished
+            scheduler.run(solution, () -> {});
+        }
+    }
+
+    public boolean prepare(Solution solution) {
+        try {
+            solution.cloned();
+        } catch (IllegalArgumentException e) {
+            fail(solution, e.getMessage());
+            return false;
+        }
+
+        try {
+            getDockerfile(solution);
+        } catch (IOException e) {
+            fail(solution, "Can not find Dockerfile for platform " + solution.getPlatform());
+            return false;
+        }
+        return true;
+    }
+
+    public boolean build(Solution solution, Consumer<String> onBuilt) {
+        // status is checked and changed atomically, kill can not slip in between
+        if (!solution.setStatus(COMPILING)) {
+            log.debug("Attempt to build solution with id: {} and status: {}",
                     solution.getId(), solution.getStatus());
-            return solution.getId();
+            return false;
         }
 
+        long startedAt = System.nanoTime();
         try {
-            solution.setStatus(COMPILING);
-            docker.buildImage(sources, solution.getServerUrl(),
-                    new LogWriter(solution, true),
-                    imageId -> runContainer(solution, imageId));
-        } catch (Throwable e) {
-            if (solution.getStatus() != KILLED) {
-                solution.setStatus(ERROR);
+            DockerIgnore excludes = new DockerIgnore(BuildContext.EXCLUDES)
+                    .add(solution.getPlatform().getExcludes())
+                    .addFile(solution.getSources());
+            BuildContext context = BuildContext.of(solution.getSources(),
+                    getDockerfile(solution), excludes);
+            String key = images.key(context, solution.getServerUrl());
+            if (!solution.getStatus().isActive()) {
+                // superseded while build context was prepared
+                metrics.cancelled("build");
+                return false;
             }
+            Optional<String> cached = images.get(key);
+            if (cached.isPresent()) {
+                reaper.track(solution, cached.get());
+                LogWriter writer = logs.writer(solution, true, logListener);
+                writer.write("Using cached image " + cached.get() + "\n");
+                writer.close();
+                metrics.built(solution.getPlatform(), "cached", System.nanoTime() - startedAt);
+                onBuilt.accept(cached.get());
+                return true;
+            }
+            LogWriter writer = logs.writer(solution, true, logListener);
+            writer.write(String.format("Build context: %s files, %s files excluded (%s)\n",
+                    context.getFiles().size(), context.getExcludedFiles(),
+                    FileUtils.byteCountToDisplaySize(context.getExcludedBytes())));
+            // written before the build, as the writer is closed when it completes
+            writer.write("Sending build context to Docker daemon: "
+                    + FileUtils.byteCountToDisplaySize(context.getIncludedBytes()) + "\n");
+            Closeable build = docker.buildImage(context, solution.getServerUrl(), writer,
+                    imageId -> {
+                        builds.remove(solution.getId());
+                        if (imageId != null) {
+                            reaper.track(solution, imageId);
+                            images.put(key, imageId);
+                        }
+                        boolean cancelled = imageId == null && !solution.getStatus().isActive();
+                        if (cancelled) {
+                            metrics.cancelled("build");
+                        }
+                        metrics.built(solution.getPlatform(),
+                                (imageId != null) ? "built" : cancelled ? "cancelled" : "failed",
+                                System.nanoTime() - startedAt);
+                        onBuilt.accept(imageId);
+                    });
+            if (build != null) {
+                builds.put(solution.getId(), build);
+                if (!solution.getStatus().isActive()) {
+                    // killed before the build could be registered
+                    cancelBuild(solution);
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            metrics.built(solution.getPlatform(), "failed", System.nanoTime() - startedAt);
+            solution.setStatus(ERROR);
+            return false;
         }
+    }
 
-        return solution.getId();
+    public void fail(Solution solution, String message) {
+        log.error("Solution with id: {} failed: {}", solution.getId(), message);
+        solution.finish();
+
+        if (solution.getSources().exists() || solution.getSources().mkdirs()) {
+            LogWriter writer = logs.writer(solution, true, logListener);
+            writer.write(message + "\n");
+            writer.close();
+        }
     }
 
     public void killAll(Token token) {
@@ -94,17 +321,39 @@ public class SolutionManager {
 
     public SolutionSummary getSolutionSummary(Token token, int solutionId) {
         return getSolution(token, solutionId)
-                .map(SolutionSummary::new)
+                .map(this::summary)
                 .orElseThrow(() -> new SolutionNotFoundException(solutionId));
     }
 
     public List<SolutionSummary> getAllSolutionSummary(Token token) {
         return getSolutions(token).stream()
-                .map(SolutionSummary::new)
-                .sorted(Comparator.comparingInt(SolutionSummary::getId))
+                .map(this::summary)
                 .collect(toList());
     }
 
+    private SolutionSummary summary(Solution solution) {
+        SolutionSummary summary = new SolutionSummary(solution);
+        int position = scheduler.position(solution);
+        if (position > 0) {
+            summary.setQueue(position);
+        }
+        sampler.usage(solution).ifPresent(summary::setResources);
+        if (config.isBlueGreen() && solution.getStatus().isActive()) {
+            if (solution.getStatus() == RUNNING) {
+                getPending(solution).ifPresent(pending -> summary.setPending(pending.getId()));
+            } else {
+                getActive(solution).ifPresent(active -> summary.setActive(active.getId()));
+            }
+        }
+        return summary;
+    }
+
+    public List<ResourceSample> getResources(Token token, int solutionId) {
+        Solution solution = getSolution(token, solutionId)
+                .orElseThrow(() -> new SolutionNotFoundException(solutionId));
+        return sampler.samples(solution);
+    }
+
     public List<String> getLogs(Token token, int solutionId, LogType logType, int offset) {
         Solution solution = getSolution(token, solutionId)
                 .orElseThrow(() -> new SolutionNotFoundException(solutionId));
@@ -113,75 +362,152 @@ public class SolutionManager {
             return Collections.emptyList();
         }
 
-        return readLogs(solution, logType, offset);
+        return tails.read(solution, logType, offset)
+                .orElseGet(() -> readLogs(solution, logType, offset));
+    }
+
+    public SseEmitter subscribe(Token token) {
+        return events.subscribe(token);
+    }
+
+    public SseEmitter subscribe(Token token, int solutionId, LogType logType, int offset) {
+        Solution solution = getSolution(token, solutionId)
+                .orElseThrow(() -> new SolutionNotFoundException(solutionId));
+        return events.subscribe(solution, logType, offset);
     }
 
     private List<Solution> getSolutions(Token token) {
-        return solutions.stream()
-                .filter(s -> s.allows(token))
-                .collect(toList());
+        return solutions.get(token);
+    }
+
+    private List<Solution> getSolutions(Solution solution) {
+        return solutions.get(solution.getPlayerId(), solution.getCode());
     }
 
     private Optional<Solution> getSolution(Token token, int solutionId) {
-        return getSolutions(token).stream()
-                .filter(s -> s.getId() == solutionId)
-                .findFirst();
+        return solutions.get(token, solutionId);
     }
 
-    private void runContainer(Solution solution, String imageId) {
+    public void runContainer(Solution solution, String imageId) {
         if (solution.getStatus() == KILLED) {
             log.info("Attempt to run killed solution with id: {}", solution.getId());
             return;
         }
+        if (imageId == null) {
+            fail(solution, getActive(solution)
+                    .map(active -> "Image was not built, solution with id: "
+                            + active.getId() + " keeps running")
+                    .orElse("Image was not built"));
+            return;
+        }
+        long startedAt = System.nanoTime();
         solution.setImageId(imageId);
-        solution.setStatus(RUNNING);
         solution.setStarted(LocalDateTime.now());
+        if (!solution.setStatus(RUNNING)) {
+            log.info("Attempt to run solution with id: {} and status: {}",
+                    solution.getId(), solution.getStatus());
+            return;
+        }
 
-        String containerId = docker.createContainer(imageId, hostConfig);
+        Optional<String> warm = pool.take(imageId);
+        String containerId = warm.orElseGet(() -> docker.createContainer(imageId, hostConfig));
         solution.setContainerId(containerId);
+        solution.setHost(docker.getHost(containerId));
+        journal.save(solution);
+        metrics.created(solution.getPlatform(), warm.isPresent(), System.nanoTime() - startedAt);
 
-        docker.startContainer(solution.getContainerId());
+        AtomicBoolean first = new AtomicBoolean();
+        LogListener listener = ((LogListener) (runned, type, line, text) -> {
+            if (first.compareAndSet(false, true)) {
+                pool.onFirstLog(warm.isPresent(), System.nanoTime() - startedAt);
+            }
+        }).andThen(logListener);
 
-        docker.logContainer(solution.getContainerId(),
-                new LogWriter(solution, false));
+        LogWriter writer = logs.writer(solution, false, listener);
+        if (warm.isPresent()) {
+            // warm container is attached before start to measure the first line
+            docker.attachContainer(solution.getContainerId(), writer);
+        }
+
+        long startingAt = System.nanoTime();
+        docker.startContainer(solution.getContainerId());
+        metrics.started(solution.getPlatform(), System.nanoTime() - startingAt);
+        if (!warm.isPresent()) {
+            // logs are replayed from the start, nothing is missed
+            docker.logContainer(solution.getContainerId(), writer);
+        }
+        if (solution.getStatus() == KILLED) {
+            // killed before start, so kill could not stop the container
+            docker.killContainer(solution.getContainerId());
+        } else {
+            swap(solution);
+        }
 
         docker.waitContainer(solution.getContainerId(),
                 () -> cleanupSolution(solution));
+
+        pool.refill(solution.getPlatform(), imageId, hostConfig);
     }
 
     private void cleanupSolution(Solution solution) {
         solution.finish();
+        try {
+            if (docker.isOomKilled(solution.getContainerId())) {
+                sampler.oomKilled(solution);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Can not inspect container {}: {}", solution.getContainerId(), e.getMessage());
+        }
+        sampler.stopped(solution);
         docker.removeContainer(solution.getContainerId());
-        // TODO: remove images
+        // image is removed later by ImageReaper
+    }
+
+    /**
+     * Daemon stops the build when its connection is closed, build slot
+     * is released at once without waiting for the daemon.
+     */
+    private void cancelBuild(Solution solution) {
+        Closeable build = builds.remove(solution.getId());
+        if (build == null) {
+            return;
+        }
+        log.info("Build of solution with id: {} is cancelled", solution.getId());
+        try {
+            build.close();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Can not cancel build of solution with id: {}", solution.getId(), e);
+        }
     }
 
     private void kill(Solution solution) {
-        if (!solution.getStatus().isActive()) {
+        if (!solution.setStatus(KILLED)) {
             return;
         }
-        solution.setStatus(KILLED);
         if (solution.getContainerId() != null) {
             docker.killContainer(solution.getContainerId());
         }
     }
 
-    private void addDockerfile(Solution solution) {
-        String platformFolder = solution.getPlatform().getFolderName();
-        try {
-            File destination = new File(solution.getSources(), DOCKERFILE);
-            String path = config.getDockerfilesFolder() + "/" + platformFolder + "/" + DOCKERFILE;
+    private byte[] getDockerfile(Solution solution) throws IOException {
+        String path = config.getDockerfilesFolder() + "/"
+                + solution.getPlatform().getFolderName() + "/" + BuildContext.DOCKERFILE;
+        byte[] dockerfile = dockerfiles.get(path);
+        if (dockerfile == null) {
             URL url = getClass().getResource(path);
-            FileUtils.copyURLToFile(url, destination);
-        } catch (IOException e) {
-            log.error("Can not add Dockerfile to solution with id: {}", solution.getId());
-            solution.setStatus(ERROR);
+            if (url == null) {
+                throw new FileNotFoundException(path);
+            }
+            dockerfile = IOUtils.toByteArray(url);
+            dockerfiles.put(path, dockerfile);
         }
+        return dockerfile;
     }
 
     private List<String> readLogs(Solution solution, LogType type, int offset) {
         String logFilePath = solution.getSources() + "/" + type.getFilename();
-        try (Stream<String> log = Files.lines(Paths.get(logFilePath))) {
-            return log.skip(offset).collect(Collectors.toList());
+        try {
+            return LogReader.read(new File(logFilePath), offset);
         } catch (IOException e) {
             log.error("Log file not exists: " + logFilePath);
             throw new IllegalStateException("Solution with id: " + solution.getId()
@@ -192,5 +518,6 @@ public class SolutionManager {
     // for testing only
     void clear() {
         solutions.clear();
+        images.clear();
     }
 }
\ No newline at end of file
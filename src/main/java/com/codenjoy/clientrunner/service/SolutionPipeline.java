@@ -0,0 +1,183 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.facade.GitService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs solution lifecycle in stages: clone -> prepare -> build -> run.
+ * Each stage has its own bounded pool and queue, so slow clones
+ * or builds never block servlet threads or each other.
+ * Builds and runs are admitted by {@link SolutionScheduler}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SolutionPipeline {
+
+    private final ClientServerServiceConfig config;
+    private final GitService git;
+    private final SolutionManager solutionManager;
+    private final SolutionScheduler scheduler;
+    private final RunnerMetrics metrics;
+    private final SubmissionDebouncer debouncer;
+
+    private Stage clone;
+    private Stage prepare;
+    private Stage build;
+    private Stage run;
+
+    @PostConstruct
+    protected void init() {
+        ClientServerServiceConfig.Pipeline pipeline = config.getPipeline();
+        clone = new Stage("clone", pipeline.getClone());
+        prepare = new Stage("prepare", pipeline.getPrepare());
+        build = new Stage("build", pipeline.getBuild());
+        run = new Stage("run", pipeline.getRun());
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        clone.shutdown();
+        prepare.shutdown();
+        build.shutdown();
+        run.shutdown();
+    }
+
+    /**
+     * Solution id is returned at once. Submissions coming within debounce
+     * window are collapsed into the last one by {@link SubmissionDebouncer},
+     * which passes it to {@link PlayerExecutor}, so previous solutions
+     * of the player are killed one submission at a time.
+     */
+    public int submit(Token token, String repo, File directory) {
+        Solution solution = solutionManager.register(token, directory);
+        debouncer.submit(token, () -> {
+            if (solutionManager.supersede(token, solution)) {
+                clone.submit(solution, () -> cloneRepository(solution, repo));
+            }
+        });
+        return solution.getId();
+    }
+
+    private void cloneRepository(Solution solution, String repo) {
+        long startedAt = System.nanoTime();
+        boolean cloned = git.clone(repo, solution.getSources(),
+                () -> !solution.getStatus().isActive());
+        if (!solution.getStatus().isActive()) {
+            // superseded while cloning
+            metrics.cancelled("clone");
+            return;
+        }
+        metrics.cloned(System.nanoTime() - startedAt, cloned);
+        if (!cloned) {
+            solutionManager.fail(solution, "Can not clone repository: " + repo);
+            return;
+        }
+        prepare.submit(solution, () -> prepareSolution(solution));
+    }
+
+    private void prepareSolution(Solution solution) {
+        if (!solutionManager.prepare(solution)) {
+            return;
+        }
+        if (!scheduler.build(solution, () -> build.submit(solution, () -> buildImage(solution)))) {
+            solutionManager.fail(solution, "Too many solutions waiting for build, please try again later");
+        }
+    }
+
+    private void buildImage(Solution solution) {
+        CompletableFuture<String> built = new CompletableFuture<>();
+        boolean started = false;
+        try {
+            started = solutionManager.build(solution, built::complete);
+        } finally {
+            if (!started) {
+                scheduler.built(solution);
+            }
+        }
+        if (!started) {
+            return;
+        }
+        // build slot is held until docker finishes or the build is cancelled on kill,
+        // stage thread is not: the rest is done by the thread which completes the build
+        built.thenAccept(imageId -> {
+            scheduler.built(solution);
+            try {
+                submitRun(solution, imageId);
+            } catch (Throwable e) {
+                log.error("Can not run built solution with id: {}", solution.getId(), e);
+                solutionManager.fail(solution, "Stage 'build' failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void submitRun(Solution solution, String imageId) {
+        if (solutionManager.getActive(solution).isPresent()) {
+            // run slot of the active solution is handed over when this one is started
+            run.submit(solution, () -> solutionManager.runContainer(solution, imageId));
+            return;
+        }
+        if (!scheduler.run(solution, () -> run.submit(solution,
+                () -> solutionManager.runContainer(solution, imageId))))
+        {
+            solutionManager.fail(solution, "Too many solutions waiting for run, please try again later");
+        }
+    }
+
+    private class Stage {
+
+        private final String name;
+        private final ThreadPoolExecutor executor;
+
+        Stage(String name, ClientServerServiceConfig.Pipeline.Stage config) {
+            this.name = name;
+            this.executor = new ThreadPoolExecutor(
+                    config.getThreads(), config.getThreads(),
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(config.getQueue()),
+                    new CustomizableThreadFactory("pipeline-" + name + "-"));
+        }
+
+        void submit(Solution solution, Runnable task) {
+            try {
+                executor.execute(() -> process(solution, task));
+            } catch (RejectedExecutionException e) {
+                solutionManager.fail(solution, "Too many solutions in '" + name +
+                        "' stage, please try again later");
+            }
+        }
+
+        private void process(Solution solution, Runnable task) {
+            if (!solution.getStatus().isActive()) {
+                log.debug("Skip '{}' stage for inactive solution with id: {} and status: {}",
+                        name, solution.getId(), solution.getStatus());
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("Stage '{}' failed for solution with id: {}", name, solution.getId(), e);
+                solutionManager.fail(solution, "Stage '" + name + "' failed: " + e.getMessage());
+            }
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+    }
+}
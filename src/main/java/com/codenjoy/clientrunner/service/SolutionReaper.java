@@ -0,0 +1,239 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Evicts finished solutions from memory and deletes (or archives) their
+ * folders: all but last solutions of each player, solutions older than
+ * max age and the oldest ones when all folders exceed size limit.
+ * Folders left from previous runs are treated as finished solutions.
+ * Active solutions are never touched.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SolutionReaper {
+
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+
+    private final ClientServerServiceConfig config;
+    private final SolutionRegistry solutions;
+    private final ResourceSampler sampler;
+    private final SolutionJournal journal;
+    private final Map<File, Long> sizes = new ConcurrentHashMap<>();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("solution-reaper-"));
+        long interval = config().getIntervalSec();
+        if (interval > 0) {
+            executor.scheduleWithFixedDelay(this::reap, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void reap() {
+        try {
+            for (Folder folder : expired()) {
+                remove(folder);
+            }
+        } catch (Throwable e) {
+            log.error("Can not remove solutions", e);
+        }
+    }
+
+    private List<Folder> expired() {
+        List<Folder> all = folders();
+        all.sort(Comparator.comparingLong((Folder folder) -> folder.time).reversed());
+
+        Set<Folder> result = new LinkedHashSet<>();
+        long maxAge = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config().getMaxAgeMin());
+        all.stream()
+                .filter(folder -> folder.time <= maxAge)
+                .forEach(result::add);
+
+        all.stream()
+                .collect(groupingBy(folder -> folder.player, LinkedHashMap::new, toList()))
+                .values().stream()
+                .flatMap(player -> player.stream().skip(config().getKeepPerPlayer()))
+                .forEach(result::add);
+
+        long limit = config().getSizeLimitMB() * BYTES_IN_MB;
+        long total = all.stream().mapToLong(this::size).sum()
+                - result.stream().filter(this::isRemovable).mapToLong(this::size).sum();
+        for (int i = all.size() - 1; i >= 0 && total > limit; i--) {
+            Folder folder = all.get(i);
+            if (isRemovable(folder) && result.add(folder)) {
+                total -= size(folder);
+            }
+        }
+
+        return result.stream()
+                .filter(this::isRemovable)
+                .collect(toList());
+    }
+
+    /**
+     * Solutions from registry and folders of solutions
+     * (root/player/code/time) which are not in registry.
+     */
+    private List<Folder> folders() {
+        Map<File, Solution> known = new HashMap<>();
+        for (Solution solution : solutions.getAll()) {
+            known.put(absolute(solution.getSources()), solution);
+        }
+
+        List<Folder> result = new ArrayList<>();
+        for (File player : list(root())) {
+            for (File code : list(player)) {
+                for (File folder : list(code)) {
+                    Solution solution = known.remove(folder);
+                    result.add((solution != null)
+                            ? new Folder(folder, solution)
+                            : new Folder(folder, player.getName(), folder.lastModified()));
+                }
+            }
+        }
+        // sources were not cloned or are stored somewhere else
+        known.forEach((folder, solution) -> result.add(new Folder(folder, solution)));
+        return result;
+    }
+
+    private static File[] list(File directory) {
+        File[] result = directory.listFiles(File::isDirectory);
+        return (result == null) ? new File[0] : result;
+    }
+
+    private boolean isRemovable(Folder folder) {
+        return folder.solution == null || !folder.solution.getStatus().isActive();
+    }
+
+    private long size(Folder folder) {
+        if (!folder.directory.exists()) {
+            return 0;
+        }
+        if (!isRemovable(folder)) {
+            // logs of active solution are still growing
+            return FileUtils.sizeOfDirectory(folder.directory);
+        }
+        return sizes.computeIfAbsent(folder.directory, FileUtils::sizeOfDirectory);
+    }
+
+    private void remove(Folder folder) {
+        if (folder.solution != null) {
+            solutions.remove(folder.solution);
+            sampler.evict(folder.solution);
+            journal.remove(folder.solution);
+        }
+        if (!folder.directory.exists()) {
+            removed.incrementAndGet();
+            return;
+        }
+        long size = size(folder);
+        File root = root();
+        boolean inRoot = folder.directory.toPath().startsWith(root.toPath());
+        try {
+            String archive = config().getArchivePath();
+            if (archive == null || archive.isEmpty() || !inRoot) {
+                FileUtils.deleteDirectory(folder.directory);
+            } else {
+                String relative = root.toPath().relativize(folder.directory.toPath()).toString();
+                FileUtils.moveDirectory(folder.directory, new File(archive, relative));
+            }
+            sizes.remove(folder.directory);
+            removed.incrementAndGet();
+            reclaimed.addAndGet(size);
+            if (inRoot) {
+                removeEmptyParents(root, folder.directory);
+            }
+            log.debug("Solution folder {} of player {} removed", folder.directory, folder.player);
+        } catch (IOException e) {
+            log.warn("Can not remove solution folder {}: {}", folder.directory, e.getMessage());
+        }
+    }
+
+    private void removeEmptyParents(File root, File directory) {
+        File parent = directory.getParentFile();
+        // delete() fails for not empty directory
+        while (parent != null && !parent.equals(root) && parent.delete()) {
+            parent = parent.getParentFile();
+        }
+    }
+
+    private File root() {
+        return absolute(new File(config.getSolutionFolder().getPath()));
+    }
+
+    private static File absolute(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    public long getRemoved() {
+        return removed.get();
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimed.get();
+    }
+
+    private ClientServerServiceConfig.Retention config() {
+        return config.getRetention();
+    }
+
+    private static class Folder {
+
+        private final File directory;
+        private final String player;
+        private final long time;
+        private final Solution solution;
+
+        Folder(File directory, String player, long time) {
+            this.directory = directory;
+            this.player = player;
+            this.time = time;
+            this.solution = null;
+        }
+
+        Folder(File directory, Solution solution) {
+            this.directory = directory;
+            this.player = solution.getPlayerId();
+            this.time = millis(Optional.ofNullable(solution.getFinished())
+                    .orElse(solution.getCreated()));
+            this.solution = solution;
+        }
+
+        private static long millis(LocalDateTime time) {
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * All solutions indexed by id and by player (playerId + code).
+ * Player's solutions are kept ordered by id.
+ */
+@Service
+public class SolutionRegistry {
+
+    private final Map<Integer, Solution> byId = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentNavigableMap<Integer, Solution>> byPlayer = new ConcurrentHashMap<>();
+
+    public void add(Solution solution) {
+        byPlayer.compute(key(solution.getPlayerId(), solution.getCode()),
+                (key, solutions) -> {
+                    if (solutions == null) {
+                        solutions = new ConcurrentSkipListMap<>();
+                    }
+                    solutions.put(solution.getId(), solution);
+                    byId.put(solution.getId(), solution);
+                    return solutions;
+                });
+    }
+
+    public void remove(Solution solution) {
+        byPlayer.computeIfPresent(key(solution.getPlayerId(), solution.getCode()),
+                (key, solutions) -> {
+                    solutions.remove(solution.getId());
+                    byId.remove(solution.getId());
+                    return solutions.isEmpty() ? null : solutions;
+                });
+    }
+
+    public Optional<Solution> get(Token token, int solutionId) {
+        return Optional.ofNullable(byId.get(solutionId))
+                .filter(solution -> solution.allows(token));
+    }
+
+    /**
+     * @return player's solutions ordered by id
+     */
+    public List<Solution> get(Token token) {
+        return get(token.getPlayerId(), token.getCode());
+    }
+
+    /**
+     * @return player's solutions ordered by id
+     */
+    public List<Solution> get(String playerId, String code) {
+        ConcurrentNavigableMap<Integer, Solution> solutions = byPlayer.get(key(playerId, code));
+        if (solutions == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(solutions.values());
+    }
+
+    public Collection<Solution> getAll() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public void clear() {
+        byPlayer.clear();
+        byId.clear();
+    }
+
+    private String key(String playerId, String code) {
+        return playerId + "/" + code;
+    }
+}
@@ -0,0 +1,82 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Admission in front of docker: limits how many images are built and how
+ * many containers are running at the same time, for all players and for
+ * each of them. Solutions over the limits wait in {@link FairQueue}.
+ */
+@Service
+@RequiredArgsConstructor
+public class SolutionScheduler {
+
+    private final ClientServerServiceConfig config;
+
+    private FairQueue builds;
+    private FairQueue runs;
+
+    @PostConstruct
+    protected void init() {
+        ClientServerServiceConfig.Scheduler scheduler = config.getScheduler();
+        builds = new FairQueue("build", scheduler.getBuilds(),
+                scheduler.getPerPlayer(), scheduler.getQueue());
+        runs = new FairQueue("run", scheduler.getRuns(),
+                scheduler.getPerPlayer(), scheduler.getQueue());
+    }
+
+    /**
+     * Build slot is held until {@link #built(Solution)}.
+     */
+    public boolean build(Solution solution, Runnable task) {
+        return builds.submit(solution, task);
+    }
+
+    public void built(Solution solution) {
+        builds.release(solution);
+    }
+
+    /**
+     * Run slot is held until solution is finished.
+     */
+    public boolean run(Solution solution, Runnable task) {
+        return runs.submit(solution, task);
+    }
+
+    /**
+     * Running solution passes its run slot to the one replacing it.
+     */
+    public void handover(Solution from, Solution to) {
+        runs.handover(from, to);
+    }
+
+    public boolean holdsRun(Solution solution) {
+        return runs.holds(solution);
+    }
+
+    public void finished(Solution solution) {
+        builds.release(solution);
+        runs.release(solution);
+    }
+
+    /**
+     * @return position of the solution waiting for build or run, 0 otherwise
+     */
+    public int position(Solution solution) {
+        int position = builds.position(solution);
+        return (position != 0) ? position : runs.position(solution);
+    }
+
+    public FairQueue getBuilds() {
+        return builds;
+    }
+
+    public FairQueue getRuns() {
+        return runs;
+    }
+}
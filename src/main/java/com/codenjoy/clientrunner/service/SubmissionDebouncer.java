@@ -0,0 +1,109 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Token;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses submissions of one player (playerId + code) which come
+ * within the window into the last one. Each submission restarts
+ * the window and drops the pending one, so repeated clicks
+ * or pushes start a single clone and build. The timer only fires,
+ * the task itself is handed to {@link PlayerExecutor}, so players
+ * do not wait for each other on the timer thread.
+ */
+@Service
+@RequiredArgsConstructor
+public class SubmissionDebouncer {
+
+    private final ClientServerServiceConfig config;
+    private final PlayerExecutor players;
+    private final Map<String, Submission> pending = new ConcurrentHashMap<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    protected void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("debounce-"));
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Passes the task to {@link PlayerExecutor} when the window passes
+     * without newer submissions of the player, otherwise the task is dropped.
+     */
+    public void submit(Token token, Runnable task) {
+        submitted.increment();
+        long window = config.getDebounce().getWindowMs();
+        if (window <= 0) {
+            players.execute(token, task);
+            return;
+        }
+        String key = key(token);
+        Submission submission = new Submission(task);
+        pending.compute(key, (player, previous) -> {
+            if (previous != null) {
+                // if its timer has fired already, it will not find itself in the map
+                previous.future.cancel(false);
+                coalesced.increment();
+            }
+            submission.future = timer.schedule(() -> fire(key, token, submission),
+                    window, TimeUnit.MILLISECONDS);
+            return submission;
+        });
+    }
+
+    private void fire(String key, Token token, Submission submission) {
+        if (pending.remove(key, submission)) {
+            players.execute(token, submission.task);
+        }
+    }
+
+    private static String key(Token token) {
+        return token.getPlayerId() + "/" + token.getCode();
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return submissions dropped for a newer one of the same player
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    private static class Submission {
+
+        private final Runnable task;
+        private volatile ScheduledFuture<?> future;
+
+        Submission(Runnable task) {
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Token;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Parses server URLs with the pattern compiled once. Recently parsed
+ * tokens are kept in LRU cache, because UI polls with the same URL.
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenResolver {
+
+    private final ClientServerServiceConfig config;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private Pattern pattern;
+    private Map<String, Token> cache;
+
+    @PostConstruct
+    protected void init() {
+        pattern = Pattern.compile(config.getServerRegex());
+        int limit = config.getTokens().getCacheSize();
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Token> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    public Token resolve(String serverUrl) {
+        Token token;
+        synchronized (cache) {
+            token = cache.get(serverUrl);
+        }
+        if (token != null) {
+            hits.incrementAndGet();
+            return token;
+        }
+        misses.incrementAndGet();
+        // invalid URLs are not cached, exception is thrown every time
+        token = Token.from(serverUrl, pattern);
+        synchronized (cache) {
+            cache.put(serverUrl, token);
+        }
+        return token;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
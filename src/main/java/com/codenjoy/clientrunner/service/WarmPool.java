@@ -0,0 +1,221 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.model.Platform;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import com.github.dockerjava.api.model.HostConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps created (but not started) containers of cached images, so the same
+ * sources submitted again start without create round trip. Each platform
+ * has its own limit, containers not taken in idle timeout are removed.
+ * Pooled containers are not load of their docker hosts until taken,
+ * the one whose host is full when taken is removed instead.
+ * Also measures time from container start request to the first log line
+ * for warm and cold starts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WarmPool {
+
+    private final DockerConfig config;
+    private final DockerService docker;
+    private final ImageCache cache;
+    private final Map<String, Warm> warm = new LinkedHashMap<>();
+    private final Stats warmStats = new Stats();
+    private final Stats coldStats = new Stats();
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("warm-pool-"));
+        if (isEnabled()) {
+            long timeout = config().getIdleTimeoutSec();
+            executor.scheduleWithFixedDelay(this::expire, timeout, timeout, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        executor.shutdownNow();
+        List<Warm> all;
+        synchronized (warm) {
+            all = new ArrayList<>(warm.values());
+            warm.clear();
+        }
+        all.forEach(this::remove);
+    }
+
+    private boolean isEnabled() {
+        return config().getSize() > 0;
+    }
+
+    /**
+     * @return id of created container of the image, if there is one
+     * and its host has room for it
+     */
+    public Optional<String> take(String imageId) {
+        Warm container;
+        synchronized (warm) {
+            container = warm.remove(imageId);
+        }
+        if (container == null) {
+            return Optional.empty();
+        }
+        if (!docker.claim(container.id)) {
+            // cold container will be created on the host with room
+            remove(container);
+            return Optional.empty();
+        }
+        return Optional.of(container.id);
+    }
+
+    /**
+     * Creates container of the cached image in background for the next run.
+     */
+    public void refill(Platform platform, String imageId, HostConfig hostConfig) {
+        if (!isEnabled() || !cache.contains(imageId)) {
+            return;
+        }
+        executor.execute(() -> {
+            synchronized (warm) {
+                if (warm.containsKey(imageId)) {
+                    return;
+                }
+            }
+            // warm container is a guess, it is not worth moving the image
+            if (!docker.hasRoom(imageId)) {
+                return;
+            }
+            try {
+                Warm container = new Warm(platform, imageId,
+                        docker.createIdleContainer(imageId, hostConfig));
+                put(container);
+            } catch (RuntimeException e) {
+                log.warn("Can not create warm container of image {}: {}", imageId, e.getMessage());
+            }
+        });
+    }
+
+    private void put(Warm container) {
+        List<Warm> evicted = new ArrayList<>();
+        synchronized (warm) {
+            Warm previous = warm.put(container.imageId, container);
+            if (previous != null) {
+                evicted.add(previous);
+            }
+            long count = warm.values().stream()
+                    .filter(other -> other.platform == container.platform)
+                    .count();
+            Iterator<Warm> iterator = warm.values().iterator();
+            while (count > config().getSize() && iterator.hasNext()) {
+                Warm eldest = iterator.next();
+                if (eldest.platform == container.platform) {
+                    iterator.remove();
+                    evicted.add(eldest);
+                    count--;
+                }
+            }
+        }
+        evicted.forEach(this::remove);
+    }
+
+    void expire() {
+        long expired = System.currentTimeMillis()
+                - TimeUnit.SECONDS.toMillis(config().getIdleTimeoutSec());
+        List<Warm> evicted = new ArrayList<>();
+        synchronized (warm) {
+            Iterator<Warm> iterator = warm.values().iterator();
+            while (iterator.hasNext()) {
+                Warm container = iterator.next();
+                // container of removed image would keep it on disk
+                if (container.createdAt <= expired || !cache.contains(container.imageId)) {
+                    iterator.remove();
+                    evicted.add(container);
+                }
+            }
+        }
+        evicted.forEach(this::remove);
+    }
+
+    private void remove(Warm container) {
+        try {
+            docker.removeContainer(container.id);
+        } catch (RuntimeException e) {
+            log.warn("Can not remove warm container {}: {}", container.id, e.getMessage());
+        }
+    }
+
+    public int size() {
+        synchronized (warm) {
+            return warm.size();
+        }
+    }
+
+    public void onFirstLog(boolean isWarm, long nanos) {
+        (isWarm ? warmStats : coldStats).add(nanos);
+    }
+
+    /**
+     * @return average time from start request to the first log line
+     */
+    public double getFirstLogMs(boolean isWarm) {
+        return (isWarm ? warmStats : coldStats).average() / 1_000_000d;
+    }
+
+    public long getStarts(boolean isWarm) {
+        return (isWarm ? warmStats : coldStats).count.get();
+    }
+
+    public long getFirstLogNanos(boolean isWarm) {
+        return (isWarm ? warmStats : coldStats).nanos.get();
+    }
+
+    private DockerConfig.WarmPool config() {
+        return config.getWarmPool();
+    }
+
+    private static class Stats {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        void add(long value) {
+            nanos.addAndGet(value);
+            count.incrementAndGet();
+        }
+
+        double average() {
+            long count = this.count.get();
+            return (count == 0) ? 0 : (double) nanos.get() / count;
+        }
+    }
+
+    private static class Warm {
+
+        private final Platform platform;
+        private final String imageId;
+        private final String id;
+        private final long createdAt = System.currentTimeMillis();
+
+        Warm(Platform platform, String imageId, String id) {
+            this.platform = platform;
+            this.imageId = imageId;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.*;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Docker build context of the solution: sources tree without excluded
+ * paths plus platform Dockerfile added as a virtual entry.
+ * Files generated by runner and player's own Dockerfile are always skipped.
+ * The tree is walked once, the tar is streamed without temporary files.
+ */
+@Slf4j
+public class BuildContext {
+
+    public static final String DOCKERFILE = "Dockerfile";
+    public static final List<String> EXCLUDES = List.of(".idea", ".vscode", "**/.DS_Store");
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    private final File sources;
+    private final byte[] dockerfile;
+    private final List<String> files;
+    private final long includedBytes;
+    private final int excludedFiles;
+    private final long excludedBytes;
+    private final CompletableFuture<Long> size = new CompletableFuture<>();
+
+    private BuildContext(File sources, byte[] dockerfile, List<String> files,
+                         long includedBytes, int excludedFiles, long excludedBytes)
+    {
+        this.sources = sources;
+        this.dockerfile = dockerfile;
+        this.files = files;
+        this.includedBytes = includedBytes;
+        this.excludedFiles = excludedFiles;
+        this.excludedBytes = excludedBytes;
+    }
+
+    /**
+     * @param excluded gets path relative to sources with '/' separators
+     */
+    public static BuildContext of(File sources, byte[] dockerfile,
+                                  Predicate<String> excluded) throws IOException
+    {
+        Path root = sources.toPath();
+        List<String> files = new ArrayList<>();
+        long[] includedBytes = {dockerfile.length};
+        int[] excludedFiles = {0};
+        long[] excludedBytes = {0};
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                String path = root.relativize(dir).toString().replace('\\', '/');
+                return isGenerated(path) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (!attributes.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String path = root.relativize(file).toString().replace('\\', '/');
+                if (path.equals(DOCKERFILE) || isGenerated(path)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (excluded.test(path)) {
+                    excludedFiles[0]++;
+                    excludedBytes[0] += attributes.size();
+                } else {
+                    files.add(path);
+                    includedBytes[0] += attributes.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return new BuildContext(sources, dockerfile, files,
+                includedBytes[0], excludedFiles[0], excludedBytes[0]);
+    }
+
+    /**
+     * Generated by runner itself, never sent to docker.
+     */
+    private static boolean isGenerated(String path) {
+        return path.equals(LogWriter.BUILD_LOG.substring(1))
+                || path.equals(LogWriter.RUNTIME_LOG.substring(1))
+                || path.endsWith(LogIndex.EXTENSION)
+                || path.equals(".git") || path.startsWith(".git/");
+    }
+
+    public File getSources() {
+        return sources;
+    }
+
+    public byte[] getDockerfile() {
+        return dockerfile;
+    }
+
+    /**
+     * @return sorted paths of included files relative to sources
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return bytes of included files and Dockerfile, known before the tar is written
+     */
+    public long getIncludedBytes() {
+        return includedBytes;
+    }
+
+    public int getExcludedFiles() {
+        return excludedFiles;
+    }
+
+    public long getExcludedBytes() {
+        return excludedBytes;
+    }
+
+    /**
+     * @return size of the tar in bytes, completed when tar is written
+     */
+    public CompletableFuture<Long> getSize() {
+        return size;
+    }
+
+    /**
+     * Tar is written by executor while docker reads it from returned stream.
+     * The stream must be closed when docker stops reading it: this fails
+     * the blocked write and interrupts the writer, so its thread is released.
+     */
+    public InputStream stream(ExecutorService executor) throws IOException {
+        PipedInputStream in = new PipedInputStream(PIPE_SIZE);
+        PipedOutputStream out = new PipedOutputStream(in);
+        Future<?> writing = executor.submit(() -> {
+            try (OutputStream closing = out) {
+                write(closing);
+            } catch (IOException e) {
+                // docker gets broken tar and fails the build
+                log.warn("Can not write build context of {}: {}", sources, e.getMessage());
+                size.completeExceptionally(e);
+            }
+        });
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    writing.cancel(true);
+                }
+            }
+        };
+    }
+
+    public void write(OutputStream out) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new BufferedOutputStream(counting));
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+        TarArchiveEntry entry = new TarArchiveEntry(DOCKERFILE);
+        entry.setSize(dockerfile.length);
+        tar.putArchiveEntry(entry);
+        tar.write(dockerfile);
+        tar.closeArchiveEntry();
+
+        for (String name : files) {
+            File file = new File(sources, name);
+            entry = new TarArchiveEntry(file, name);
+            if (file.canExecute()) {
+                entry.setMode(0100755);
+            }
+            tar.putArchiveEntry(entry);
+            try (InputStream in = new FileInputStream(file)) {
+                in.transferTo(tar);
+            }
+            tar.closeArchiveEntry();
+        }
+        tar.finish();
+        tar.flush();
+        size.complete(counting.getByteCount());
+    }
+}
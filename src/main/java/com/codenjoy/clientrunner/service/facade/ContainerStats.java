@@ -0,0 +1,99 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.github.dockerjava.api.model.CpuStatsConfig;
+import com.github.dockerjava.api.model.MemoryStatsConfig;
+import com.github.dockerjava.api.model.Statistics;
+
+import java.util.Optional;
+
+/**
+ * One sample of container resource usage.
+ */
+public class ContainerStats {
+
+    private final double cpu;
+    private final long throttledPeriods;
+    private final long memory;
+    private final long memoryLimitHits;
+
+    public ContainerStats(double cpu, long throttledPeriods, long memory, long memoryLimitHits) {
+        this.cpu = cpu;
+        this.throttledPeriods = throttledPeriods;
+        this.memory = memory;
+        this.memoryLimitHits = memoryLimitHits;
+    }
+
+    static ContainerStats of(Statistics stats) {
+        return new ContainerStats(cpu(stats),
+                Optional.ofNullable(stats.getCpuStats())
+                        .map(CpuStatsConfig::getThrottlingData)
+                        .map(throttling -> value(throttling.getThrottledPeriods()))
+                        .orElse(0L),
+                memory(stats.getMemoryStats()),
+                Optional.ofNullable(stats.getMemoryStats())
+                        .map(memory -> value(memory.getFailcnt()))
+                        .orElse(0L));
+    }
+
+    /**
+     * Same as 'docker stats' does: share of host CPU time used since
+     * previous read multiplied by the number of CPUs.
+     */
+    private static double cpu(Statistics stats) {
+        CpuStatsConfig current = stats.getCpuStats();
+        CpuStatsConfig previous = stats.getPreCpuStats();
+        if (current == null || previous == null
+                || current.getCpuUsage() == null || previous.getCpuUsage() == null)
+        {
+            return 0;
+        }
+        long cpuDelta = value(current.getCpuUsage().getTotalUsage())
+                - value(previous.getCpuUsage().getTotalUsage());
+        long systemDelta = value(current.getSystemCpuUsage())
+                - value(previous.getSystemCpuUsage());
+        if (cpuDelta <= 0 || systemDelta <= 0) {
+            return 0;
+        }
+        long cpus = value(current.getOnlineCpus());
+        if (cpus == 0 && current.getCpuUsage().getPercpuUsage() != null) {
+            cpus = current.getCpuUsage().getPercpuUsage().size();
+        }
+        return 100.0 * cpuDelta / systemDelta * Math.max(cpus, 1);
+    }
+
+    /**
+     * RSS if cgroup reports it, total usage otherwise.
+     */
+    private static long memory(MemoryStatsConfig memory) {
+        if (memory == null) {
+            return 0;
+        }
+        if (memory.getStats() != null && memory.getStats().getRss() != null) {
+            return memory.getStats().getRss();
+        }
+        return value(memory.getUsage());
+    }
+
+    private static long value(Long value) {
+        return (value == null) ? 0 : value;
+    }
+
+    /**
+     * @return CPU usage in percents, 100 per each fully used CPU
+     */
+    public double getCpu() {
+        return cpu;
+    }
+
+    public long getThrottledPeriods() {
+        return throttledPeriods;
+    }
+
+    public long getMemory() {
+        return memory;
+    }
+
+    public long getMemoryLimitHits() {
+        return memoryLimitHits;
+    }
+}
@@ -0,0 +1,54 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.github.dockerjava.api.DockerClient;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One docker daemon of the pool with its load: containers created
+ * by the runner (or found running on start) and builds in progress.
+ */
+@Getter
+@RequiredArgsConstructor
+public class DockerHost {
+
+    private final String name;
+    private final DockerClient client;
+    private final AtomicInteger containers = new AtomicInteger();
+    private final AtomicInteger builds = new AtomicInteger();
+    private volatile long memory;
+
+    void setMemory(long memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Builds are counted too, because their containers
+     * will be created on the same host.
+     */
+    int getLoad() {
+        return containers.get() + builds.get();
+    }
+
+    /**
+     * @return memory left when each container takes the limit, or
+     * {@link Long#MAX_VALUE} when memory or the limit is unknown
+     */
+    long getFreeMemory(long containerLimit) {
+        if (memory <= 0 || containerLimit <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return memory - getLoad() * containerLimit;
+    }
+
+    void released() {
+        containers.updateAndGet(count -> Math.max(0, count - 1));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
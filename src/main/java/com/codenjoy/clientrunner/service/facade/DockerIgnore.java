@@ -0,0 +1,115 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Exclusion rules in .dockerignore format: '*' and '?' do not match '/',
+ * '**' matches any number of directories, '!' re-includes previously
+ * excluded paths, the last matching rule wins. Excluded directory
+ * excludes everything inside it.
+ */
+public class DockerIgnore implements Predicate<String> {
+
+    public static final String FILENAME = ".dockerignore";
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    public DockerIgnore(List<String> patterns) {
+        add(patterns);
+    }
+
+    public DockerIgnore add(List<String> patterns) {
+        for (String line : patterns) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean include = pattern.startsWith("!");
+            if (include) {
+                pattern = pattern.substring(1).trim();
+            }
+            pattern = pattern.replaceAll("^/+|/+$", "");
+            if (!pattern.isEmpty()) {
+                rules.add(new Rule(compile(pattern), include));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds rules from .dockerignore in the sources root, if it exists.
+     */
+    public DockerIgnore addFile(File sources) throws IOException {
+        File file = new File(sources, FILENAME);
+        if (file.isFile()) {
+            add(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        }
+        return this;
+    }
+
+    private static Pattern compile(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char ch = glob.charAt(i);
+            if (ch == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                i++;
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                    // '**/' matches zero or more directories
+                    i++;
+                    regex.append("(?:.*/)?");
+                } else {
+                    regex.append(".*");
+                }
+            } else if (ch == '*') {
+                regex.append("[^/]*");
+            } else if (ch == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(ch)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * @param path relative to sources root with '/' separators
+     */
+    @Override
+    public boolean test(String path) {
+        boolean excluded = false;
+        for (Rule rule : rules) {
+            if (rule.include == excluded && rule.matches(path)) {
+                excluded = !rule.include;
+            }
+        }
+        return excluded;
+    }
+
+    private static class Rule {
+
+        private final Pattern pattern;
+        private final boolean include;
+
+        Rule(Pattern pattern, boolean include) {
+            this.pattern = pattern;
+            this.include = include;
+        }
+
+        boolean matches(String path) {
+            // the path itself or one of its parent directories
+            for (int end = path.indexOf('/'); end != -1; end = path.indexOf('/', end + 1)) {
+                if (pattern.matcher(path.substring(0, end)).matches()) {
+                    return true;
+                }
+            }
+            return pattern.matcher(path).matches();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.codenjoy.clientrunner.service.facade;
 
+import com.codenjoy.clientrunner.config.DockerConfig;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.async.ResultCallback;
 import com.github.dockerjava.api.command.BuildImageResultCallback;
@@ -8,6 +9,7 @@ import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.BuildResponseItem;
 import com.github.dockerjava.api.model.Frame;
 import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Statistics;
 import com.github.dockerjava.core.DefaultDockerClientConfig;
 import com.github.dockerjava.core.DockerClientBuilder;
 import com.github.dockerjava.core.DockerClientConfig;
@@ -16,52 +18,205 @@ import com.github.dockerjava.transport.DockerHttpClient;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import java.io.File;
-import java.util.Optional;
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DockerService {
 
     public static final String SERVER_PARAMETER = "CODENJOY_URL";
+    public static final Map<String, String> LABELS = Map.of("com.codenjoy.client-runner", "true");
 
-    private final DockerClientConfig dockerClientConfig = DefaultDockerClientConfig
-            .createDefaultConfigBuilder()
-            .build();
-
-    private final DockerHttpClient dockerHttpClient = new ApacheDockerHttpClient.Builder()
-            .dockerHost(dockerClientConfig.getDockerHost())
-            .sslConfig(dockerClientConfig.getSSLConfig())
-            .build();
-
-    private final DockerClient docker = DockerClientBuilder.getInstance()
-            .withDockerHttpClient(dockerHttpClient)
-            .build();
+    private final DockerConfig config;
+    private final Map<String, DockerHost> containers = new ConcurrentHashMap<>();
+    private final Map<String, DockerHost> images = new ConcurrentHashMap<>();
+    // created for the warm pool, not load of their hosts until claimed
+    private final Set<String> idle = ConcurrentHashMap.newKeySet();
+    private final ExecutorService contexts = Executors.newCachedThreadPool(
+            new CustomizableThreadFactory("build-context-"));
+    private List<DockerHost> hosts;
 
     @PostConstruct
     protected void init() {
+        List<String> urls = Optional.ofNullable(config.getHosts())
+                .map(DockerConfig.Hosts::getUrls)
+                .orElse(Collections.emptyList());
+        if (urls.isEmpty()) {
+            // DOCKER_HOST or local socket
+            urls = Collections.singletonList(null);
+        }
+        hosts = urls.stream()
+                .map(this::host)
+                .collect(toList());
+        hosts.forEach(this::connect);
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        contexts.shutdownNow();
+    }
+
+    private DockerHost host(String url) {
+        DefaultDockerClientConfig.Builder builder = DefaultDockerClientConfig.createDefaultConfigBuilder();
+        if (url != null) {
+            builder.withDockerHost(url);
+        }
+        DockerClientConfig clientConfig = builder.build();
+        String name = clientConfig.getDockerHost().toString();
+        return new DockerHost(name, client(clientConfig));
+    }
+
+    protected DockerClient client(DockerClientConfig clientConfig) {
+        DockerHttpClient httpClient = new ApacheDockerHttpClient.Builder()
+                .dockerHost(clientConfig.getDockerHost())
+                .sslConfig(clientConfig.getSSLConfig())
+                .build();
+        return DockerClientBuilder.getInstance(clientConfig)
+                .withDockerHttpClient(httpClient)
+                .build();
+    }
+
+    private void connect(DockerHost host) {
         try {
-            docker.pingCmd().exec();
+            DockerClient client = host.getClient();
+            client.pingCmd().exec();
+            host.setMemory(Optional.ofNullable(client.infoCmd().exec().getMemTotal()).orElse(0L));
+            // containers left from previous run are load too,
+            // containers of others sharing the daemon are not ours to count
+            host.getContainers().set(client.listContainersCmd()
+                    .withLabelFilter(LABELS)
+                    .exec().size());
         } catch (RuntimeException e) {
-            log.error("Docker not found");
+            log.error("Docker not found at {}", host);
         }
     }
 
+    /**
+     * Picks the least loaded host which has room for one more container
+     * (by count and by memory limit of containers), or the least loaded
+     * one when all hosts are full.
+     */
+    DockerHost place() {
+        long limit = config.getContainer().getMemoryLimitBytes();
+        Comparator<DockerHost> byLoad = Comparator.comparingInt(DockerHost::getLoad)
+                .thenComparing(host -> host.getFreeMemory(limit), Comparator.reverseOrder());
+        Optional<DockerHost> free = hosts.stream()
+                .filter(this::hasRoom)
+                .min(byLoad);
+        if (free.isPresent()) {
+            return free.get();
+        }
+        DockerHost host = Collections.min(hosts, byLoad);
+        log.warn("All docker hosts are full, {} is used", host);
+        return host;
+    }
+
+    private boolean hasRoom(DockerHost host) {
+        int maxContainers = Optional.ofNullable(config.getHosts())
+                .map(DockerConfig.Hosts::getMaxContainers)
+                .orElse(0);
+        long limit = config.getContainer().getMemoryLimitBytes();
+        return (maxContainers <= 0 || host.getLoad() < maxContainers)
+                && host.getFreeMemory(limit) >= limit;
+    }
+
+    /**
+     * @return true if the host of the image has room for one more container
+     */
+    public boolean hasRoom(String imageId) {
+        return hasRoom(imageHost(imageId));
+    }
+
+    /**
+     * Remembers the host of container started before restart.
+     */
+    public void assign(String containerId, String host) {
+        hosts.stream()
+                .filter(candidate -> candidate.getName().equals(host))
+                .findFirst()
+                .ifPresent(found -> containers.put(containerId, found));
+    }
+
+    /**
+     * @return name of the host the container (or image) lives on
+     */
+    public String getHost(String id) {
+        DockerHost host = containers.getOrDefault(id, images.get(id));
+        return (host == null) ? null : host.getName();
+    }
+
+    public List<DockerHost> getHosts() {
+        return hosts;
+    }
+
+    private DockerClient container(String containerId) {
+        return client(containers, containerId, (client, id) -> client.inspectContainerCmd(id).exec());
+    }
+
+    private DockerClient image(String imageId) {
+        return client(images, imageId, (client, id) -> client.inspectImageCmd(id).exec());
+    }
+
+    /**
+     * Finds the host by id, unknown ids (e.g. created by someone else)
+     * are looked up on all hosts. The first host is used when
+     * nobody knows the id, so docker reports it is not found.
+     */
+    private DockerClient client(Map<String, DockerHost> known, String id,
+                                BiConsumer<DockerClient, String> inspect)
+    {
+        DockerHost host = known.get(id);
+        if (host != null) {
+            return host.getClient();
+        }
+        if (hosts.size() == 1) {
+            return hosts.get(0).getClient();
+        }
+        for (DockerHost candidate : hosts) {
+            try {
+                inspect.accept(candidate.getClient(), id);
+                known.put(id, candidate);
+                return candidate.getClient();
+            } catch (NotFoundException e) {
+                // try next host
+            } catch (RuntimeException e) {
+                log.warn("Docker host {} is not available: {}", candidate, e.getMessage());
+            }
+        }
+        return hosts.get(0).getClient();
+    }
+
     public void killContainer(String containerId) {
         if (isContainerRunning(containerId)) {
-            docker.killContainerCmd(containerId)
+            container(containerId).killContainerCmd(containerId)
                     .exec();
         }
     }
 
     public boolean isContainerRunning(String containerId) {
         try {
-            InspectContainerResponse response = docker.inspectContainerCmd(containerId)
+            InspectContainerResponse response = container(containerId).inspectContainerCmd(containerId)
                     .exec();
             return Optional.ofNullable(response)
                     .map(InspectContainerResponse::getState)
@@ -72,18 +227,68 @@ public class DockerService {
         }
     }
 
+    public boolean isOomKilled(String containerId) {
+        try {
+            return Optional.ofNullable(container(containerId).inspectContainerCmd(containerId).exec())
+                    .map(InspectContainerResponse::getState)
+                    .map(InspectContainerResponse.ContainerState::getOOMKilled)
+                    .orElse(false);
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Requests one sample of container resource usage. The callback
+     * is called once in docker callback thread, with null if stats
+     * are not available.
+     */
+    public void stats(String containerId, Consumer<ContainerStats> onStats) {
+        AtomicBoolean done = new AtomicBoolean();
+        container(containerId).statsCmd(containerId)
+                .withNoStream(true)
+                .exec(new ResultCallback.Adapter<>() {
+                    @Override
+                    public void onNext(Statistics stats) {
+                        if (done.compareAndSet(false, true)) {
+                            onStats.accept(ContainerStats.of(stats));
+                        }
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        if (done.compareAndSet(false, true)) {
+                            onStats.accept(null);
+                        }
+                        super.onComplete();
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        if (done.compareAndSet(false, true)) {
+                            onStats.accept(null);
+                        }
+                        super.onError(throwable);
+                    }
+                });
+    }
+
     public void removeContainer(String containerId) {
         try {
-            docker.removeContainerCmd(containerId)
+            container(containerId).removeContainerCmd(containerId)
                     .withRemoveVolumes(true)
                     .exec();
         } catch (NotFoundException e) {
             // do nothing, container already removed
         }
+        DockerHost host = containers.remove(containerId);
+        if (host != null && !idle.remove(containerId)) {
+            host.released();
+        }
     }
 
     public void waitContainer(String containerId, Runnable onComplete) {
-        docker.waitContainerCmd(containerId)
+        container(containerId).waitContainerCmd(containerId)
                 .exec(new ResultCallback.Adapter<>() {
                     @SneakyThrows
                     @Override
@@ -95,51 +300,249 @@ public class DockerService {
     }
 
     public void startContainer(String containerId) {
-        docker.startContainerCmd(containerId).exec();
+        container(containerId).startContainerCmd(containerId).exec();
     }
 
+    private DockerHost imageHost(String imageId) {
+        DockerHost host = images.get(imageId);
+        if (host == null) {
+            image(imageId);
+            host = images.getOrDefault(imageId, hosts.get(0));
+        }
+        return host;
+    }
+
+    /**
+     * Container is created on the host where its image was built.
+     * If that host is full by now (e.g. image is cached), the image
+     * is moved to the least loaded host and the container is created there.
+     */
     public String createContainer(String imageId, HostConfig hostConfig) {
-        return docker.createContainerCmd(imageId)
+        DockerHost host = imageHost(imageId);
+        if (!hasRoom(host)) {
+            DockerHost free = place();
+            if (free != host && hasRoom(free) && transfer(imageId, host, free)) {
+                host = free;
+            }
+        }
+        String containerId = create(host, imageId, hostConfig);
+        host.getContainers().incrementAndGet();
+        return containerId;
+    }
+
+    /**
+     * Container is created on the host of the image, but it is not counted
+     * as load of the host until it is claimed, so idle containers
+     * do not take room of runs.
+     */
+    public String createIdleContainer(String imageId, HostConfig hostConfig) {
+        String containerId = create(imageHost(imageId), imageId, hostConfig);
+        idle.add(containerId);
+        return containerId;
+    }
+
+    /**
+     * Counts idle container as load of its host.
+     *
+     * @return false if the host has no room for one more container
+     */
+    public boolean claim(String containerId) {
+        DockerHost host = containers.get(containerId);
+        if (host == null || !hasRoom(host) || !idle.remove(containerId)) {
+            return false;
+        }
+        host.getContainers().incrementAndGet();
+        return true;
+    }
+
+    private String create(DockerHost host, String imageId, HostConfig hostConfig) {
+        String containerId = host.getClient().createContainerCmd(imageId)
                 .withHostConfig(hostConfig)
+                .withLabels(LABELS)
                 .exec().getId();
+        containers.put(containerId, host);
+        return containerId;
+    }
+
+    /**
+     * Copies the image through the runner, the copy on the source host
+     * is removed unless its containers still use it.
+     */
+    private boolean transfer(String imageId, DockerHost from, DockerHost to) {
+        try (InputStream image = from.getClient().saveImageCmd(imageId).exec()) {
+            to.getClient().loadImageCmd(image).exec();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Can not move image {} from {} to {}: {}", imageId, from, to, e.getMessage());
+            return false;
+        }
+        images.put(imageId, to);
+        log.info("Image {} is moved from full host {} to {}", imageId, from, to);
+        try {
+            from.getClient().removeImageCmd(imageId).exec();
+        } catch (RuntimeException e) {
+            log.debug("Image {} is left on {}: {}", imageId, from, e.getMessage());
+        }
+        return true;
     }
 
-    public void buildImage(File sources, String serverUrl, LogWriter writer, Consumer<String> onCompete) {
-        docker.buildImageCmd(sources)
-                .withBuildArg(SERVER_PARAMETER, serverUrl)
-                .exec(new BuildImageResultCallback() {
-                    private String imageId;
-                    private String error;
+    public boolean isImageExists(String imageId) {
+        try {
+            image(imageId).inspectImageCmd(imageId).exec();
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
 
-                    @Override
-                    public void onNext(BuildResponseItem item) {
-                        if (item.getStream() != null) {
-                            writer.write(item.getStream());
+    public long getImageSize(String imageId) {
+        Long size = image(imageId).inspectImageCmd(imageId).exec().getSize();
+        return (size == null) ? 0 : size;
+    }
+
+    /**
+     * @return false if the image was already removed
+     */
+    public boolean removeImage(String imageId) {
+        try {
+            image(imageId).removeImageCmd(imageId).exec();
+            images.remove(imageId);
+            return true;
+        } catch (NotFoundException e) {
+            images.remove(imageId);
+            return false;
+        }
+    }
+
+    /**
+     * Image is built on the least loaded host, so the solution
+     * container will be created there.
+     *
+     * @return closing it stops the build: the daemon stops building when
+     *         its connection is closed, onCompete gets null at once
+     *         without waiting for the daemon
+     */
+    @SneakyThrows
+    public Closeable buildImage(BuildContext context, String serverUrl, LogWriter writer, Consumer<String> onCompete) {
+        DockerHost host = place();
+        host.getBuilds().incrementAndGet();
+        try {
+            return build(host, context, serverUrl, writer, imageId -> {
+                if (imageId != null) {
+                    images.put(imageId, host);
+                }
+                host.getBuilds().decrementAndGet();
+                onCompete.accept(imageId);
+            });
+        } catch (Throwable e) {
+            host.getBuilds().decrementAndGet();
+            throw e;
+        }
+    }
+
+    @SneakyThrows
+    private Closeable build(DockerHost host, BuildContext context, String serverUrl,
+                            LogWriter writer, Consumer<String> onCompete)
+    {
+        InputStream stream = context.stream(contexts);
+        // completed once: by the daemon or by cancel, whichever is first
+        AtomicBoolean completed = new AtomicBoolean();
+        BiConsumer<String, String> complete = (imageId, message) -> {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            // releases the thread writing build context, if docker stopped reading
+            closeQuietly(stream);
+            if (message != null) {
+                writer.write(message + "\n");
+            }
+            writer.close();
+            onCompete.accept(imageId);
+        };
+        ResultCallback<BuildResponseItem> callback;
+        try {
+            callback = host.getClient().buildImageCmd(stream)
+                    .withBuildArg(SERVER_PARAMETER, serverUrl)
+                    .exec(new BuildImageResultCallback() {
+                        private String imageId;
+                        private String error;
+
+                        @Override
+                        public void onNext(BuildResponseItem item) {
+                            if (item.getStream() != null) {
+                                writer.write(item.getStream());
+                            }
+                            if (item.isBuildSuccessIndicated()) {
+                                this.imageId = item.getImageId();
+                            } else if (item.isErrorIndicated()) {
+                                this.error = item.getError();
+                            }
+                        }
+
+                        @SneakyThrows
+                        @Override
+                        public void onComplete() {
+                            complete.accept(imageId, null);
+                            super.onComplete();
                         }
-                        if (item.isBuildSuccessIndicated()) {
-                            this.imageId = item.getImageId();
-                        } else if (item.isErrorIndicated()) {
-                            this.error = item.getError();
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                            complete.accept(null, String.valueOf(throwable.getMessage()));
+                            super.onError(throwable);
                         }
+                    });
+        } catch (RuntimeException e) {
+            closeQuietly(stream);
+            throw e;
+        }
+        return () -> {
+            complete.accept(null, "Build cancelled");
+            callback.close();
+        };
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing to release
+        }
+    }
+
+    /**
+     * Follows logs of started container from its very first line.
+     */
+    public void logContainer(String containerId, LogWriter writer) {
+        container(containerId).logContainerCmd(containerId)
+                .withStdOut(true)
+                .withStdErr(true)
+                .withFollowStream(true)
+                .withTailAll()
+                .exec(new ResultCallback.Adapter<>() {
+
+                    @Override
+                    public void onNext(Frame object) {
+                        writer.write(object);
                     }
 
-                    @SneakyThrows
                     @Override
                     public void onComplete() {
                         writer.close();
-
-                        onCompete.accept(imageId);
                         super.onComplete();
                     }
                 });
     }
 
-    public void logContainer(String containerId, LogWriter writer) {
-        docker.logContainerCmd(containerId)
+    /**
+     * Attaches to created but not started container, e.g. taken from
+     * the warm pool, so the first lines are not missed after start.
+     */
+    public void attachContainer(String containerId, LogWriter writer) {
+        container(containerId).attachContainerCmd(containerId)
                 .withStdOut(true)
                 .withStdErr(true)
                 .withFollowStream(true)
-                .withTailAll()
+                .withLogs(true)
                 .exec(new ResultCallback.Adapter<>() {
 
                     @Override
@@ -154,4 +557,55 @@ public class DockerService {
                     }
                 });
     }
+
+    /**
+     * Follows logs of already running container, e.g. after restart of runner.
+     * Lines written before {@code sinceMillis} (unix time) are skipped.
+     * Docker filters by whole seconds only, so the rest of the second
+     * is filtered by timestamps of the lines.
+     */
+    public void followContainer(String containerId, LogWriter writer, long sinceMillis) {
+        container(containerId).logContainerCmd(containerId)
+                .withStdOut(true)
+                .withStdErr(true)
+                .withFollowStream(true)
+                .withTimestamps(true)
+                .withSince((int) TimeUnit.MILLISECONDS.toSeconds(sinceMillis))
+                .exec(new ResultCallback.Adapter<>() {
+
+                    @Override
+                    public void onNext(Frame object) {
+                        Frame frame = since(object, sinceMillis);
+                        if (frame != null) {
+                            writer.write(frame);
+                        }
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        writer.close();
+                        super.onComplete();
+                    }
+                });
+    }
+
+    /**
+     * @return frame without its timestamp, null if it was logged before {@code sinceMillis}
+     */
+    static Frame since(Frame frame, long sinceMillis) {
+        String payload = new String(frame.getPayload(), UTF_8);
+        int space = payload.indexOf(' ');
+        if (space < 0) {
+            return frame;
+        }
+        try {
+            Instant loggedAt = Instant.parse(payload.substring(0, space));
+            if (loggedAt.toEpochMilli() <= sinceMillis) {
+                return null;
+            }
+        } catch (DateTimeParseException e) {
+            return frame;
+        }
+        return new Frame(frame.getStreamType(), payload.substring(space + 1).getBytes(UTF_8));
+    }
 }
@@ -1,28 +1,319 @@
 package com.codenjoy.clientrunner.service.facade;
 
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.io.File;
-import java.util.Optional;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
+/**
+ * Keeps bare mirror of each repository, so every next check fetches
+ * only new commits. Solution folder gets files of the tip commit only,
+ * without history. Least recently used mirrors are removed
+ * when all mirrors exceed size limit.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class GitService {
 
-    public Optional<Git> clone(String repoURI, File directory) {
+    private static final long BYTES_IN_MB = 1024L * 1024L;
+
+    private final ClientServerServiceConfig config;
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    protected void init() {
+        File[] folders = root().listFiles(File::isDirectory);
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            Mirror mirror = new Mirror(folder);
+            mirror.size = FileUtils.sizeOfDirectory(folder);
+            mirror.used = folder.lastModified();
+            mirrors.put(folder.getName(), mirror);
+        }
+    }
+
+    public boolean clone(String repoURI, File directory) {
+        return clone(repoURI, directory, () -> false);
+    }
+
+    /**
+     * Cancellation is checked after the mirror lock is taken, by JGit
+     * while objects are transferred and between checked out files,
+     * so clone of killed solution stops instead of running to completion.
+     *
+     * @return false if clone failed or was cancelled
+     */
+    public boolean clone(String repoURI, File directory, BooleanSupplier cancelled) {
+        Mirror mirror = lock(name(repoURI));
+        try {
+            // could wait for the lock behind other clone of the same repository
+            check(cancelled);
+            update(mirror, repoURI, new CancelMonitor(cancelled));
+            check(cancelled);
+            checkout(mirror, directory, cancelled);
+            mirror.used = System.currentTimeMillis();
+            mirror.size = FileUtils.sizeOfDirectory(mirror.folder);
+        } catch (GitAPIException | IOException | RuntimeException e) {
+            if (cancelled.getAsBoolean()) {
+                log.debug("Clone of repository: {} cancelled", repoURI);
+                return false;
+            }
+            log.error("Can not clone repository: {}", repoURI, e);
+            return false;
+        } finally {
+            mirror.lock.unlock();
+        }
+        evict();
+        return true;
+    }
+
+    private static void check(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+    }
+
+    private Mirror lock(String name) {
+        while (true) {
+            Mirror mirror = mirrors.computeIfAbsent(name,
+                    key -> new Mirror(new File(root(), key)));
+            mirror.lock.lock();
+            if (mirrors.get(name) == mirror) {
+                return mirror;
+            }
+            // mirror was removed while waiting for the lock
+            mirror.lock.unlock();
+        }
+    }
+
+    /**
+     * Mirror which can not be fetched (corrupted or with rewritten
+     * remote) is cloned again, otherwise it would fail every next clone.
+     */
+    private void update(Mirror mirror, String repoURI, ProgressMonitor monitor)
+            throws GitAPIException, IOException
+    {
+        if (new File(mirror.folder, Constants.HEAD).exists()) {
+            try {
+                fetch(mirror, monitor);
+                return;
+            } catch (GitAPIException | IOException | RuntimeException e) {
+                if (monitor.isCancelled()) {
+                    throw e;
+                }
+                log.warn("Can not fetch mirror {}, cloning it again: {}",
+                        mirror.folder, e.getMessage());
+            }
+        }
+        FileUtils.deleteDirectory(mirror.folder);
         try {
-            return Optional.ofNullable(Git.cloneRepository()
+            Git.cloneRepository()
                     .setURI(repoURI)
-                    .setDirectory(directory)
-                    .call());
-        } catch (GitAPIException e) {
-            log.error("Can not clone repository: {}", repoURI);
-            return Optional.empty();
+                    .setDirectory(mirror.folder)
+                    .setBare(true)
+                    .setProgressMonitor(monitor)
+                    .call()
+                    .getRepository().close();
+        } catch (GitAPIException | RuntimeException e) {
+            // do not leave half cloned mirror
+            FileUtils.deleteDirectory(mirror.folder);
+            throw e;
+        }
+    }
+
+    private void fetch(Mirror mirror, ProgressMonitor monitor) throws GitAPIException, IOException {
+        Git git = Git.open(mirror.folder);
+        try {
+            // bare mirror has no working tree, so local branches can be updated directly
+            git.fetch()
+                    .setRefSpecs(new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*"))
+                    .setProgressMonitor(monitor)
+                    .call();
+        } finally {
+            git.getRepository().close();
+        }
+    }
+
+    private void checkout(Mirror mirror, File directory, BooleanSupplier cancelled) throws IOException {
+        Repository repository = Git.open(mirror.folder).getRepository();
+        RevWalk revWalk = new RevWalk(repository);
+        TreeWalk treeWalk = new TreeWalk(repository);
+        try {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                throw new IOException("Repository is empty");
+            }
+            RevCommit commit = revWalk.parseCommit(head);
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                check(cancelled);
+                FileMode mode = treeWalk.getFileMode(0);
+                if (mode == FileMode.GITLINK) {
+                    // submodules are not supported
+                    continue;
+                }
+                if (mode == FileMode.SYMLINK) {
+                    // link could point outside of the solution folder
+                    log.debug("Symlink {} skipped", treeWalk.getPathString());
+                    continue;
+                }
+                File file = target(directory, treeWalk.getPathString());
+                file.getParentFile().mkdirs();
+                try (OutputStream out = new FileOutputStream(file)) {
+                    repository.open(treeWalk.getObjectId(0)).copyTo(out);
+                }
+                if (mode == FileMode.EXECUTABLE_FILE) {
+                    file.setExecutable(true);
+                }
+            }
+        } finally {
+            treeWalk.release();
+            revWalk.release();
+            repository.close();
+        }
+    }
+
+    /**
+     * Tree of the player's repository could be crafted to write
+     * outside of the solution folder or into git metadata.
+     */
+    private static File target(File directory, String path) throws IOException {
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")
+                    || segment.equalsIgnoreCase(Constants.DOT_GIT))
+            {
+                throw new IOException("Unsafe path in repository: " + path);
+            }
+        }
+        File result = new File(directory, path);
+        String root = directory.getCanonicalPath() + File.separator;
+        if (!result.getCanonicalPath().startsWith(root)) {
+            throw new IOException("Unsafe path in repository: " + path);
+        }
+        return result;
+    }
+
+    private void evict() {
+        long limit = config.getMirrors().getSizeLimitMB() * BYTES_IN_MB;
+        long total = mirrors.values().stream().mapToLong(mirror -> mirror.size).sum();
+        Mirror[] eldest = mirrors.values().stream()
+                .sorted(Comparator.comparingLong(mirror -> mirror.used))
+                .toArray(Mirror[]::new);
+        for (int i = 0; i < eldest.length && total > limit; i++) {
+            Mirror mirror = eldest[i];
+            if (!mirror.lock.tryLock()) {
+                // mirror is in use right now
+                continue;
+            }
+            try {
+                FileUtils.deleteDirectory(mirror.folder);
+                mirrors.remove(mirror.folder.getName(), mirror);
+                total -= mirror.size;
+                log.info("Mirror {} removed, size limit exceeded", mirror.folder);
+            } catch (IOException e) {
+                log.warn("Can not remove mirror {}", mirror.folder, e);
+            } finally {
+                mirror.lock.unlock();
+            }
+        }
+    }
+
+    private File root() {
+        return new File(config.getMirrors().getPath());
+    }
+
+    private String name(String repoURI) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1")
+                    .digest(repoURI.getBytes(StandardCharsets.UTF_8));
+            StringBuilder result = new StringBuilder();
+            for (byte b : hash) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * JGit polls it while objects are transferred and aborts
+     * clone or fetch as soon as the solution is killed.
+     */
+    private static class CancelMonitor implements ProgressMonitor {
+
+        private final BooleanSupplier cancelled;
+
+        CancelMonitor(BooleanSupplier cancelled) {
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void start(int totalTasks) {
+            // progress is not logged
+        }
+
+        @Override
+        public void beginTask(String title, int totalWork) {
+            // progress is not logged
+        }
+
+        @Override
+        public void update(int completed) {
+            // progress is not logged
+        }
+
+        @Override
+        public void endTask() {
+            // progress is not logged
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled.getAsBoolean();
+        }
+    }
+
+    private static class Mirror {
+
+        private final File folder;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long size;
+        private volatile long used;
+
+        Mirror(File folder) {
+            this.folder = folder;
         }
     }
 }
@@ -0,0 +1,162 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log file with its sparse line index. Appended bytes are buffered
+ * and written by {@link LogFlusher} thread only. One instance is shared
+ * by all writers of the file, so line index and position stay consistent,
+ * it is closed when the last writer is closed. Published lines are numbered
+ * by the file too, written lines could be still queued for the flusher.
+ */
+public class LogFile {
+
+    private final File log;
+    private final LogIndex index;
+    private final LongAdder written;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private FileOutputStream out;
+    private long position;
+    private long lines;
+    // changed under the lock of this file by writers
+    private long published;
+    private long bufferedAt;
+    // changed by LogFlusher under the lock of its files map only
+    private int writers;
+    private volatile boolean closed;
+
+    LogFile(File log, LongAdder written) throws IOException {
+        this.log = log;
+        this.written = written;
+        this.index = new LogIndex(log);
+        this.position = log.length();
+        this.lines = countLines();
+        this.published = lines;
+    }
+
+    private long countLines() throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        long[] floor = index.floor(Integer.MAX_VALUE);
+        long result = floor[0];
+        try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+            file.seek(floor[1]);
+            InputStream in = new BufferedInputStream(
+                    Channels.newInputStream(file.getChannel()));
+            int ch;
+            while ((ch = in.read()) != -1) {
+                if (ch == '\n') {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * @return number of the next published line, the caller appends
+     * the line under the lock of this file, so numbers follow the file order
+     */
+    synchronized long nextLine() {
+        return published++;
+    }
+
+    /**
+     * @return number of the line which is published now, without taking it
+     */
+    synchronized long getPublished() {
+        return published;
+    }
+
+    String getPath() {
+        return log.getPath();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void retain() {
+        writers++;
+    }
+
+    /**
+     * @return true if there are no more writers of the file
+     */
+    boolean release() {
+        return --writers <= 0;
+    }
+
+    boolean isUsed() {
+        return writers > 0;
+    }
+
+    boolean isDirty() {
+        return buffer.size() > 0;
+    }
+
+    long getBufferedAt() {
+        return bufferedAt;
+    }
+
+    int buffer(byte[] bytes, long now) {
+        if (closed) {
+            return 0;
+        }
+        if (buffer.size() == 0) {
+            bufferedAt = now;
+        }
+        buffer.write(bytes, 0, bytes.length);
+        return buffer.size();
+    }
+
+    void flush(boolean fsync) throws IOException {
+        if (closed || buffer.size() == 0) {
+            return;
+        }
+        if (out == null) {
+            out = new FileOutputStream(log, true);
+        }
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        out.write(bytes);
+        if (fsync) {
+            out.getChannel().force(false);
+        }
+        written.add(bytes.length);
+        updateIndex(bytes);
+    }
+
+    private void updateIndex(byte[] bytes) throws IOException {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n' && ++lines % LogIndex.STEP == 0) {
+                index.add(position + i + 1);
+            }
+        }
+        position += bytes.length;
+    }
+
+    void close(boolean fsync) throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush(fsync);
+            if (out != null) {
+                out.close();
+            }
+            index.close();
+        } finally {
+            closed = true;
+            out = null;
+            buffer.reset();
+        }
+    }
+}
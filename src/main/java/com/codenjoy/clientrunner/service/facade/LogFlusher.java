@@ -0,0 +1,259 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.LogType;
+import com.codenjoy.clientrunner.model.Platform;
+import com.codenjoy.clientrunner.model.Solution;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes logs of all solutions in one background thread. Appended chunks
+ * are grouped in per-file buffers, which are flushed when they exceed
+ * buffer size or stay unflushed longer than flush interval.
+ * Docker callback threads only put chunks to the bounded queue.
+ * Writers of the same file share one {@link LogFile}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LogFlusher {
+
+    private final ClientServerServiceConfig config;
+    private final AtomicLong dropped = new AtomicLong();
+    // by log type and platform, the last one is for solutions without platform
+    private final LongAdder[][] written = counters(LogType.values().length, Platform.values().length + 1);
+    private final Set<LogFile> dirty = new LinkedHashSet<>();
+    private final Map<String, LogFile> files = new ConcurrentHashMap<>();
+    private BlockingQueue<Chunk> queue;
+    private Thread thread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        open();
+        start();
+    }
+
+    void open() {
+        queue = new ArrayBlockingQueue<>(config().getQueue());
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this::loop, "log-flusher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.join(config().getFlushIntervalMs() * 10);
+        }
+    }
+
+    public LogWriter writer(Solution solution, boolean isBuild, LogListener listener) {
+        String file = isBuild ? LogWriter.BUILD_LOG : LogWriter.RUNTIME_LOG;
+        LongAdder counter = written(isBuild ? LogType.BUILD : LogType.RUNTIME, solution.getPlatform());
+        File path = new File(solution.getSources() + file);
+        LogFile log = files.compute(path.getPath(), (key, opened) -> {
+            LogFile result = (opened != null) ? opened : newFile(path, counter);
+            result.retain();
+            return result;
+        });
+        return new LogWriter(this, log, solution, isBuild, listener);
+    }
+
+    @SneakyThrows
+    private static LogFile newFile(File path, LongAdder counter) {
+        return new LogFile(path, counter);
+    }
+
+    private static LongAdder[][] counters(int types, int platforms) {
+        LongAdder[][] result = new LongAdder[types][platforms];
+        for (LongAdder[] type : result) {
+            for (int i = 0; i < platforms; i++) {
+                type[i] = new LongAdder();
+            }
+        }
+        return result;
+    }
+
+    private LongAdder written(LogType type, Platform platform) {
+        int index = (platform == null) ? Platform.values().length : platform.ordinal();
+        return written[type.ordinal()][index];
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return bytes written to log files of the type, counted by flusher thread
+     */
+    public long getWritten(LogType type, Platform platform) {
+        return written(type, platform).sum();
+    }
+
+    boolean append(LogFile file, byte[] bytes) {
+        if (file.isClosed()) {
+            return false;
+        }
+        try {
+            Chunk chunk = new Chunk(file, bytes);
+            boolean added = (config().getWhenFull() == ClientServerServiceConfig.Logs.WhenFull.BLOCK)
+                    ? queue.offer(chunk, config().getBlockTimeoutMs(), TimeUnit.MILLISECONDS)
+                    : queue.offer(chunk);
+            if (!added) {
+                dropped.incrementAndGet();
+            }
+            return added;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits until everything appended to the file is written,
+     * the file itself is closed by its last writer. Both waiting
+     * for the room in the queue and for the flusher fit in close timeout.
+     */
+    void close(LogFile file) {
+        files.computeIfPresent(file.getPath(), (key, opened) -> {
+            if (opened == file) {
+                file.release();
+            }
+            return opened;
+        });
+        try {
+            Chunk chunk = new Chunk(file, null);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config().getCloseTimeoutMs());
+            if (!queue.offer(chunk, config().getCloseTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("Log queue is full");
+            }
+            chunk.done.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Log file was not closed in time", e);
+        }
+    }
+
+    private void loop() {
+        List<Chunk> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Chunk first = queue.poll(config().getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    batch.forEach(this::process);
+                    batch.clear();
+                }
+                flushExpired();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                log.error("Can not write logs", e);
+            }
+        }
+        flushAll();
+    }
+
+    private void process(Chunk chunk) {
+        try {
+            if (chunk.bytes == null) {
+                try {
+                    closed(chunk.file);
+                } finally {
+                    chunk.done.complete(null);
+                }
+                return;
+            }
+            int size = chunk.file.buffer(chunk.bytes, System.currentTimeMillis());
+            if (size >= config().getBufferSize()) {
+                dirty.remove(chunk.file);
+                chunk.file.flush(config().isFsync());
+            } else {
+                dirty.add(chunk.file);
+            }
+        } catch (IOException e) {
+            log.error("Can not write log chunk", e);
+        }
+    }
+
+    private void closed(LogFile file) throws IOException {
+        dirty.remove(file);
+        file.flush(config().isFsync());
+        boolean[] last = new boolean[1];
+        files.computeIfPresent(file.getPath(), (key, opened) -> {
+            // the file could be opened again while this chunk was queued
+            last[0] = (opened == file) && !file.isUsed();
+            return last[0] ? null : opened;
+        });
+        if (last[0]) {
+            file.close(config().isFsync());
+        }
+    }
+
+    private void flushExpired() throws IOException {
+        long expired = System.currentTimeMillis() - config().getFlushIntervalMs();
+        Iterator<LogFile> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            LogFile file = iterator.next();
+            if (file.getBufferedAt() > expired) {
+                // files are ordered by the time of first buffered chunk
+                break;
+            }
+            iterator.remove();
+            file.flush(config().isFsync());
+        }
+    }
+
+    private void flushAll() {
+        for (LogFile file : dirty) {
+            try {
+                file.flush(true);
+            } catch (IOException e) {
+                log.error("Can not flush log", e);
+            }
+        }
+        dirty.clear();
+    }
+
+    private ClientServerServiceConfig.Logs config() {
+        return config.getLogs();
+    }
+
+    private static class Chunk {
+
+        private final LogFile file;
+        private final byte[] bytes;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Chunk(LogFile file, byte[] bytes) {
+            this.file = file;
+            this.bytes = bytes;
+        }
+    }
+}
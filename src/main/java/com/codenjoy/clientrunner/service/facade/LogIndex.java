@@ -0,0 +1,61 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import java.io.*;
+
+/**
+ * Sparse line index stored next to the log file: every {@link #STEP}-th line
+ * has its byte offset saved, so the log can be read from any line
+ * without scanning the file from the beginning.
+ *
+ * Entry {@code i} is the offset of line {@code (i + 1) * STEP},
+ * line {@code 0} always starts at offset {@code 0}.
+ */
+public class LogIndex implements Closeable {
+
+    public static final String EXTENSION = ".idx";
+    public static final int STEP = 64;
+
+    private final File file;
+    private DataOutputStream out;
+
+    public LogIndex(File log) {
+        this.file = new File(log.getPath() + EXTENSION);
+    }
+
+    public int size() {
+        return (int) (file.length() / Long.BYTES);
+    }
+
+    public long get(int entry) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek((long) entry * Long.BYTES);
+            return in.readLong();
+        }
+    }
+
+    public void add(long position) throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new FileOutputStream(file, true));
+        }
+        out.writeLong(position);
+        out.flush();
+    }
+
+    /**
+     * @return nearest indexed position before the line: {@code [line, offset]}
+     */
+    public long[] floor(int line) throws IOException {
+        int entry = Math.min(line / STEP, size());
+        if (entry == 0) {
+            return new long[]{0, 0};
+        }
+        return new long[]{(long) entry * STEP, get(entry - 1)};
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.codenjoy.clientrunner.model.LogType;
+import com.codenjoy.clientrunner.model.Solution;
+
+public interface LogListener {
+
+    LogListener NONE = (solution, type, line, text) -> {};
+
+    void onLine(Solution solution, LogType type, long line, String text);
+
+    default LogListener andThen(LogListener next) {
+        return (solution, type, line, text) -> {
+            onLine(solution, type, line, text);
+            next.onLine(solution, type, line, text);
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class LogReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private LogReader() {
+        // utility class
+    }
+
+    /**
+     * Reads log lines starting from {@code offset} line. Seeks to the nearest
+     * indexed position first, so only the requested delta is decoded.
+     */
+    public static List<String> read(File log, int offset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(log, "r");
+             LogIndex index = new LogIndex(log))
+        {
+            long[] floor = index.floor(offset);
+            long skip = offset - floor[0];
+            file.seek(floor[1]);
+
+            Reader reader = new InputStreamReader(
+                    Channels.newInputStream(file.getChannel()), UTF_8);
+            return readLines(reader, skip);
+        }
+    }
+
+    private static List<String> readLines(Reader reader, long skip) throws IOException {
+        List<String> result = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        boolean empty = true;
+        char[] buffer = new char[BUFFER_SIZE];
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            for (int i = 0; i < count; i++) {
+                char ch = buffer[i];
+                if (ch != '\n') {
+                    if (skip == 0) {
+                        line.append(ch);
+                    }
+                    empty = false;
+                } else if (skip > 0) {
+                    skip--;
+                    empty = true;
+                } else {
+                    result.add(trim(line));
+                    line.setLength(0);
+                    empty = true;
+                }
+            }
+        }
+        if (!empty && skip == 0) {
+            result.add(trim(line));
+        }
+        return result;
+    }
+
+    private static String trim(StringBuilder line) {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            length--;
+        }
+        return line.substring(0, length);
+    }
+}
@@ -1,43 +1,81 @@
 package com.codenjoy.clientrunner.service.facade;
 
+import com.codenjoy.clientrunner.model.LogType;
 import com.codenjoy.clientrunner.model.Solution;
-import lombok.SneakyThrows;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Writer;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class LogWriter {
 
     public static final String BUILD_LOG = "/build.log";
     public static final String RUNTIME_LOG = "/app.log";
 
-    private final Writer writer;
+    private final LogFlusher flusher;
+    private final LogFile file;
     private final boolean isBuild;
+    private final Solution solution;
+    private final LogListener listener;
+    private final StringBuilder partial = new StringBuilder();
+    private boolean closed;
 
-    @SneakyThrows
-    public LogWriter(Solution solution, boolean isBuild) {
+    LogWriter(LogFlusher flusher, LogFile file, Solution solution,
+              boolean isBuild, LogListener listener)
+    {
+        this.flusher = flusher;
+        this.file = file;
         this.isBuild = isBuild;
-        String file = isBuild ? BUILD_LOG : RUNTIME_LOG;
-        writer = new BufferedWriter(new FileWriter(solution.getSources() + file));
+        this.solution = solution;
+        this.listener = listener;
     }
 
-    public void write(Object object) {
-        try {
-            String newLineSeparator = isBuild ? "" : "\n";
-            writer.write(object.toString() + newLineSeparator);
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+    public synchronized void write(Object object) {
+        if (closed) {
+            return;
         }
+        String newLineSeparator = isBuild ? "" : "\n";
+        String text = object.toString() + newLineSeparator;
+        // dropped text is not published, so line numbers match the file;
+        // other writers of the file wait, so they don't take numbers in between
+        synchronized (file) {
+            if (flusher.append(file, text.getBytes(UTF_8))) {
+                publish(text);
+            }
+        }
+    }
+
+    private void publish(String text) {
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                partial.append(text, start, i);
+                listener.onLine(solution, type(), file.nextLine(), line());
+                partial.setLength(0);
+                start = i + 1;
+            }
+        }
+        partial.append(text, start, text.length());
+    }
+
+    private String line() {
+        int length = partial.length();
+        if (length > 0 && partial.charAt(length - 1) == '\r') {
+            length--;
+        }
+        return partial.substring(0, length);
     }
 
-    public void close() {
-        try {
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private LogType type() {
+        return isBuild ? LogType.BUILD : LogType.RUNTIME;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (partial.length() > 0) {
+            listener.onLine(solution, type(), file.getPublished(), line());
         }
+        flusher.close(file);
     }
 }
@@ -1,7 +1,7 @@
-var getSolutionsInterval
-var logsInterval
-var solutionStatusInterval
+var solutionsStream
+var solutionStream
 var currentSolutionId
+var currentLogType
 
 $(function () {
     var { repo, serverUrl } = getUrls()
@@ -135,7 +135,7 @@ function getSolutions() {
                 row += '<td>' + (created || "-") + '</td>'
                 row += '<td>' + (started || "-") + '</td>'
                 row += '<td>' + (finished || "-") + '</td>'
-                if (status === 'COMPILING' || status === 'NEW') {
+                if (status === 'CLONING' || status === 'COMPILING' || status === 'NEW') {
                     row += '<td class="table-info">' + status + '</td>'
                 }
                 if (status === 'RUNNING') {
@@ -163,42 +163,66 @@ function getSolutions() {
 }
 
 function hideTable() {
-    clearInterval(getSolutionsInterval)
+    closeStream(solutionsStream)
     $('#table').hide();
 }
 
 function showTable() {
     getSolutions()
-    clearInterval(getSolutionsInterval)
-    getSolutionsInterval = setInterval(getSolutions, 1500)
+    closeStream(solutionsStream)
+    solutionsStream = openStream({ serverUrl: getUrls().serverUrl })
+    solutionsStream.addEventListener('status', function (e) {
+        getSolutions()
+    })
     $('#table').show();
 }
 
 function hideSolutionInfo() {
-    clearInterval(logsInterval)
-    clearInterval(solutionStatusInterval)
+    closeStream(solutionStream)
     $('#solutionInfo').hide();
 }
 
 function showRuntimeLogs() {
-    clearInterval(logsInterval)
-    $('#logField').empty();
-    fetchRuntimeLogs(currentSolutionId)
-    var status = $('#solStatus').text();
-    if (status !== 'ERROR' && status !== 'FINISHED' && status !== 'KILLED') {
-        clearInterval(logsInterval)
-        logsInterval = setInterval(function () { fetchRuntimeLogs(currentSolutionId); }, 1500)
-    }
+    showLogs('RUNTIME')
 }
 
 function showBuildLogs() {
-    clearInterval(logsInterval)
+    showLogs('BUILD')
+}
+
+function showLogs(logType) {
+    currentLogType = logType
     $('#logField').empty();
-    fetchBuildLogs(currentSolutionId)
-    var status = $('#solStatus').text();
-    if (status !== 'ERROR' && status !== 'FINISHED' && status !== 'KILLED') {
-        clearInterval(logsInterval)
-        logsInterval = setInterval(function () { fetchBuildLogs(currentSolutionId); }, 1500)
+    subscribeSolution(currentSolutionId, logType, 0)
+}
+
+function subscribeSolution(solutionId, logType, offset) {
+    closeStream(solutionStream)
+    solutionStream = openStream({
+        serverUrl: getUrls().serverUrl,
+        solutionId: solutionId,
+        type: logType,
+        offset: offset
+    })
+    solutionStream.addEventListener('status', function (e) {
+        showStatus(JSON.parse(e.data))
+    })
+    solutionStream.addEventListener('log', function (e) {
+        showLogLine(JSON.parse(e.data))
+    })
+    solutionStream.addEventListener('overflow', function (e) {
+        // server dropped our buffer, continue from the last received line
+        subscribeSolution(solutionId, logType, $('#logField .logLine').length)
+    })
+}
+
+function openStream(params) {
+    return new EventSource('stream?' + $.param(params))
+}
+
+function closeStream(stream) {
+    if (stream) {
+        stream.close()
     }
 }
 
@@ -207,19 +231,12 @@ function showSolutionInfo(solutionId) {
     $('#solutionInfo').show();
     fetchSolutionStatus(currentSolutionId).then(() => {
         var status = $('#solStatus').text();
-        if (status !== 'ERROR' && status !== 'FINISHED' && status !== 'KILLED') {
-            clearInterval(solutionStatusInterval)
-            solutionStatusInterval = setInterval(function () { fetchSolutionStatus(currentSolutionId); }, 1500)
-            clearInterval(logsInterval)
-            logsInterval = setInterval(function () { fetchRuntimeLogs(currentSolutionId); }, 1500)
-        }
-        if (status == 'NEW' || status == 'COMPILING') {
+        if (status == 'CLONING' || status == 'NEW' || status == 'COMPILING') {
             $('#buildLogButton').click();
         } else {
             $('#runtimeLogButton').click();
         }
     })
-
 }
 
 function fetchSolutionStatus(solutionId) {
@@ -233,63 +250,33 @@ function fetchSolutionStatus(solutionId) {
         dataType: "json",
         contentType: "application/json",
         cache: "false",
-        success: function (response) {
-            $('#solId').text(response['id']);
-            $('#solStatus').text(response['status']);
-            $('#solReceived').text(response['created'] || '-');
-            $('#solStarted').text(response['started'] || '-');
-            $('#solFinished').text(response['finished'] || '-');
-            var status = response['status'];
-            if (status === 'FINISHED' || status === 'ERROR' || status === 'KILLED') {
-                $('#stopSolutionButton').prop("disabled", true)
-            } else {
-                $('#stopSolutionButton').prop("disabled", false)
-            }
-        }
+        success: showStatus
     })
 }
 
-function fetchRuntimeLogs(solutionId) {
-    var linesCount = $('#logField .logLine').length;
-
-    $.ajax({
-        type: "get",
-        url: "runtime_logs",
-        data: {
-            serverUrl: getUrls().serverUrl,
-            solutionId: solutionId,
-            offset: linesCount
-        },
-        dataType: "json",
-        contentType: "application/json",
-        cache: "false",
-        success: function (response) {
-            console.log(response);
-            $.each(response, function (i, logStr) {
-                $('#logField').append('<samp class="logLine">' + logStr + '</samp><br/>');
-            });
-        }
-    })
+function showStatus(response) {
+    $('#solId').text(response['id']);
+    $('#solStatus').text(response['status']);
+    $('#solReceived').text(response['created'] || '-');
+    $('#solStarted').text(response['started'] || '-');
+    $('#solFinished').text(response['finished'] || '-');
+    var status = response['status'];
+    if (status === 'FINISHED' || status === 'ERROR' || status === 'KILLED') {
+        $('#stopSolutionButton').prop("disabled", true)
+    } else {
+        $('#stopSolutionButton').prop("disabled", false)
+    }
 }
 
-function fetchBuildLogs(solutionId) {
-    var linesCount = $('#logField .logLine').length;
-    $.ajax({
-        type: "get",
-        url: "build_logs",
-        data: {
-            serverUrl: getUrls().serverUrl,
-            solutionId: solutionId,
-            offset: linesCount
-        },
-        dataType: "json",
-        contentType: "application/json",
-        cache: "false",
-        success: function (response) {
-            console.log(response);
-            $.each(response, function (i, logStr) {
-                $('#logField').append('<samp class="logLine">' + logStr + '</samp><br/>');
-            });
-        }
-    })
-}
\ No newline at end of file
+function showLogLine(event) {
+    if (event.type !== currentLogType) {
+        return
+    }
+    var lines = $('#logField .logLine')
+    if (event.line < lines.length) {
+        // last line was partial, now it is complete
+        lines.eq(event.line).text(event.text)
+        return
+    }
+    $('#logField').append($('<samp class="logLine"></samp>').text(event.text), '<br/>');
+}
@@ -22,6 +22,7 @@ public class AssertSolution {
         assertEquals(solution.getStatus(), status.name());
 
         switch (Solution.Status.valueOf(solution.getStatus())) {
+            case CLONING:
             case NEW:
             case COMPILING:
                 assertNotNull(solution.getCreated());
@@ -21,7 +21,8 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 @SpringBootTest(classes = ClientRunnerApplication.class,
-        properties = "spring.main.allow-bean-definition-overriding=true")
+        properties = {"spring.main.allow-bean-definition-overriding=true",
+                "service.journal.path="})
 public class IntegrationTest extends AbstractTestNGSpringContextTests {
 
     @SpyBean
@@ -1,12 +1,13 @@
 package com.codenjoy.clientrunner.model;
 
+import com.codenjoy.clientrunner.service.facade.DockerIgnore;
 import org.junit.Test;
 
 import java.io.File;
 import java.net.URL;
 import java.util.Arrays;
 
-import static com.codenjoy.clientrunner.service.SolutionManager.DOCKERFILE;
+import static com.codenjoy.clientrunner.service.facade.BuildContext.DOCKERFILE;
 import static org.testng.Assert.*;
 
 public class PlatformTest {
@@ -23,6 +24,26 @@ public class PlatformTest {
                 .forEach(this::assertPlatformExists);
     }
 
+    @Test
+    public void shouldExcludeRootTargetOnly_forJava() {
+        // given
+        DockerIgnore excludes = new DockerIgnore(Platform.JAVA.getExcludes());
+
+        // when then
+        assertEquals(excludes.test("target/app.jar"), true);
+        assertEquals(excludes.test("src/main/java/game/target/Target.java"), false);
+    }
+
+    @Test
+    public void shouldKeepEnvSources_forPython() {
+        // given
+        DockerIgnore excludes = new DockerIgnore(Platform.PYTHON.getExcludes());
+
+        // when then
+        assertEquals(excludes.test("venv/bin/python"), true);
+        assertEquals(excludes.test("env/settings.py"), false);
+    }
+
     private void assertPlatformExists(Platform platform) {
         String folder = platform.getFolderName();
         assertEquals(platform.getFolderName(), folder);
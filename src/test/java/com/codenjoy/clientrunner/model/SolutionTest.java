@@ -1,14 +1,18 @@
 package com.codenjoy.clientrunner.model;
 
+import com.codenjoy.clientrunner.model.Solution.Status;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.codenjoy.clientrunner.ExceptionAssert.expectThrows;
 import static com.codenjoy.clientrunner.model.Solution.Status.*;
-import static org.testng.Assert.assertEquals;
-import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.*;
 
 public class SolutionTest {
 
@@ -60,12 +64,40 @@ public class SolutionTest {
         assertEquals(solution.getImageId(), null);
     }
 
+    @Test
+    public void shouldDetectPlatform_whenCloned() {
+        // given
+        solution = Solution.cloning(token, javaSources);
+        assertEquals(solution.getStatus(), CLONING);
+        assertEquals(solution.getPlatform(), null);
+
+        // when
+        solution.cloned();
+
+        // then
+        assertEquals(solution.getStatus(), NEW);
+        assertEquals(solution.getPlatform(), Platform.JAVA);
+    }
+
+    @Test
+    public void shouldCreateCloningSolution_whenSourcesNotExistYet() {
+        // when
+        solution = Solution.cloning(token, new File("bad-path"));
+
+        // then
+        assertEquals(solution.getStatus(), CLONING);
+        expectThrows(IllegalArgumentException.class,
+                "Source folder with path 'bad-path' doesn't exist",
+                () -> solution.cloned());
+    }
+
     @Test
     public void shouldUpdateOnlyNotKilledStatus() {
         // given
         assertEquals(solution.getStatus(), NEW);
 
         // when then
+        solution.setStatus(COMPILING);
         solution.setStatus(RUNNING);
         assertEquals(solution.getStatus(), RUNNING);
 
@@ -113,6 +145,7 @@ public class SolutionTest {
     @Test
     public void shouldFinalized_whenFinish_inRunningStatus() {
         // given
+        solution.setStatus(COMPILING);
         solution.setStatus(RUNNING);
 
         // when
@@ -152,7 +185,7 @@ public class SolutionTest {
     @Test
     public void shouldFinalized_whenFinish_inFinishedStatus() {
         // given
-        solution.setStatus(FINISHED);
+        solution = Solution.restore(token, javaSources, Platform.JAVA, FINISHED);
 
         // when
         solution.finish();
@@ -162,5 +195,64 @@ public class SolutionTest {
         assertSetFinishedDate();
     }
 
+    @Test
+    public void shouldRejectIllegalTransition_withoutNotification() {
+        // given
+        List<Status> notified = new ArrayList<>();
+        solution.setListener(changed -> notified.add(changed.getStatus()));
+        long rejected = Solution.getRejectedTransitions();
+
+        // when
+        boolean skipped = solution.setStatus(RUNNING);
+        boolean compiling = solution.setStatus(COMPILING);
+        boolean again = solution.setStatus(COMPILING);
+
+        // then
+        assertFalse(skipped);
+        assertTrue(compiling);
+        assertFalse(again);
+        assertEquals(solution.getStatus(), COMPILING);
+        assertEquals(notified, List.of(COMPILING));
+        assertEquals(Solution.getRejectedTransitions(), rejected + 1);
+    }
 
+    @Test
+    public void shouldReachFinalStatusOnce_whenKillBuildAndWaitCompleteRace() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int i = 0; i < 10000; i++) {
+                // given
+                Solution compiling = Solution.from(token, javaSources);
+                compiling.setStatus(COMPILING);
+                AtomicInteger notified = new AtomicInteger();
+                compiling.setListener(changed -> notified.incrementAndGet());
+                CyclicBarrier start = new CyclicBarrier(3);
+
+                // when
+                Future<Boolean> kill = executor.submit(() -> await(start) && compiling.setStatus(KILLED));
+                Future<Boolean> built = executor.submit(() -> await(start) && compiling.setStatus(RUNNING));
+                Future<Boolean> exited = executor.submit(() -> await(start) && compiling.finish());
+
+                // then
+                int changed = count(kill.get()) + count(built.get()) + count(exited.get());
+                assertTrue(exited.get(), "finish always changes active or killed status");
+                assertEquals(notified.get(), changed);
+                assertTrue(compiling.getStatus() == FINISHED || compiling.getStatus() == ERROR,
+                        "unexpected " + compiling.getStatus());
+                assertEquals(compiling.getStatus() == FINISHED, kill.get());
+                assertNotEquals(compiling.getFinished(), null);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean await(CyclicBarrier barrier) throws Exception {
+        barrier.await(10, TimeUnit.SECONDS);
+        return true;
+    }
+
+    private static int count(boolean changed) {
+        return changed ? 1 : 0;
+    }
 }
@@ -6,7 +6,6 @@ import com.codenjoy.clientrunner.dto.CheckRequest;
 import com.codenjoy.clientrunner.model.Token;
 import com.codenjoy.clientrunner.service.facade.DockerService;
 import com.codenjoy.clientrunner.service.facade.GitService;
-import org.eclipse.jgit.api.Git;
 import org.mockito.InjectMocks;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -19,13 +18,13 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
-import java.util.Optional;
 
 import static org.mockito.Mockito.*;
-import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertEquals;
 
 @SpringBootTest(classes = ClientRunnerApplication.class,
-        properties = "spring.main.allow-bean-definition-overriding=true")
+        properties = {"spring.main.allow-bean-definition-overriding=true",
+                "service.journal.path="})
 @TestExecutionListeners(MockitoTestExecutionListener.class)
 public class ClientRunnerServiceTest extends AbstractTestNGSpringContextTests {
 
@@ -48,49 +47,30 @@ public class ClientRunnerServiceTest extends AbstractTestNGSpringContextTests {
     @MockBean
     private SolutionManager solutionManager;
 
+    @MockBean
+    private SolutionPipeline pipeline;
+
     @BeforeMethod
     public void setup() {
-        reset(docker, git, solutionManager);
-    }
-
-    @Test
-    public void shouldPullFromGitAndRunInSolutionManager_whenRunSolution_withValidCheckRequest() {
-        // given
-        doReturn(Optional.of(mock(Git.class)))
-                .when(git)
-                .clone(matches("\\.*.git"), isA(File.class));
-
-        CheckRequest request = new CheckRequest();
-        request.setServerUrl(VALID_SERVER_URL);
-        request.setRepo(VALID_REPO_URL);
-
-        // when
-        service.checkSolution(request);
-
-        // then
-        verify(git, times(1)).clone(matches("\\.*.git"), isA(File.class));
-        verify(solutionManager, times(1)).runSolution(isA(Token.class), isA(File.class));
+        reset(docker, git, solutionManager, pipeline);
     }
 
     @Test
-    public void shouldThrowAnException_whenRunSolution_withRepoIsNotCloned() {
+    public void shouldSubmitToPipeline_whenRunSolution_withValidCheckRequest() {
         // given
-        doReturn(Optional.empty())
-                .when(git)
-                .clone(any(), any());
+        when(pipeline.submit(isA(Token.class), anyString(), isA(File.class)))
+                .thenReturn(1);
 
         CheckRequest request = new CheckRequest();
         request.setServerUrl(VALID_SERVER_URL);
         request.setRepo(VALID_REPO_URL);
 
         // when
-        assertThrows(
-                IllegalArgumentException.class,
-                () -> service.checkSolution(request)
-        );
+        int id = service.checkSolution(request);
 
         // then
-        verify(git, only()).clone(any(), any());
-        verify(solutionManager, never()).runSolution(any(), any());
+        assertEquals(id, 1);
+        verify(pipeline, only()).submit(isA(Token.class), eq(VALID_REPO_URL), isA(File.class));
+        verifyNoInteractions(git, solutionManager);
     }
 }
@@ -0,0 +1,151 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.codenjoy.clientrunner.model.Solution.Status.KILLED;
+import static org.testng.Assert.assertEquals;
+
+public class FairQueueTest {
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private List<String> admitted;
+
+    @BeforeMethod
+    public void setup() {
+        admitted = new ArrayList<>();
+    }
+
+    private Solution solution(String player, int id) {
+        Token token = Token.from("http://127.0.0.1/codenjoy-contest/board/player/"
+                + player + "?code=123", SERVER_URL_PATTERN);
+        Solution solution = Solution.cloning(token, new File("./"));
+        solution.setId(id);
+        return solution;
+    }
+
+    private void submit(FairQueue queue, Solution solution) {
+        queue.submit(solution, () -> admitted.add(solution.getPlayerId() + solution.getId()));
+    }
+
+    @Test
+    public void shouldServePlayersInTurn_whenOnePlayerSubmitsALot() {
+        // given
+        FairQueue queue = new FairQueue("build", 1, 10, 100);
+        Solution first = solution("spammer", 1);
+        submit(queue, first);
+        Solution spam2 = solution("spammer", 2);
+        Solution spam3 = solution("spammer", 3);
+        Solution other = solution("other", 4);
+        submit(queue, spam2);
+        submit(queue, spam3);
+        submit(queue, other);
+
+        // when
+        queue.release(first);
+        queue.release(spam2);
+
+        // then
+        assertEquals(admitted.toString(), "[spammer1, spammer2, other4]");
+    }
+
+    @Test
+    public void shouldShowQueuePosition_inServingOrder() {
+        // given
+        FairQueue queue = new FairQueue("build", 1, 10, 100);
+        submit(queue, solution("busy", 1));
+        Solution spam2 = solution("spammer", 2);
+        Solution spam3 = solution("spammer", 3);
+        Solution other = solution("other", 4);
+        Solution running = solution("busy", 5);
+
+        // when
+        submit(queue, spam2);
+        submit(queue, spam3);
+        submit(queue, other);
+
+        // then
+        assertEquals(queue.position(spam2), 1);
+        assertEquals(queue.position(other), 2);
+        assertEquals(queue.position(spam3), 3);
+        assertEquals(queue.position(running), 0);
+        assertEquals(queue.getWaiting(), 3);
+    }
+
+    @Test
+    public void shouldNotAdmitMoreThanPlayerLimit() {
+        // given
+        FairQueue queue = new FairQueue("run", 10, 1, 100);
+        Solution first = solution("player", 1);
+        Solution second = solution("player", 2);
+        submit(queue, first);
+
+        // when
+        submit(queue, second);
+        submit(queue, solution("other", 3));
+
+        // then
+        assertEquals(admitted.toString(), "[player1, other3]");
+        assertEquals(queue.position(second), 1);
+
+        // when
+        queue.release(first);
+
+        // then
+        assertEquals(admitted.toString(), "[player1, other3, player2]");
+        assertEquals(queue.getActive(), 2);
+    }
+
+    @Test
+    public void shouldSkipKilledSolutions_andRejectOverCapacity() {
+        // given
+        FairQueue queue = new FairQueue("build", 1, 10, 2);
+        Solution first = solution("player", 1);
+        Solution killed = solution("player", 2);
+        submit(queue, first);
+        submit(queue, killed);
+        submit(queue, solution("other", 3));
+
+        // when
+        boolean rejected = queue.submit(solution("other", 4), () -> {});
+        killed.setStatus(KILLED);
+        queue.release(first);
+
+        // then
+        assertEquals(rejected, false);
+        assertEquals(admitted.toString(), "[player1, other3]");
+        assertEquals(queue.getAdmitted(), 2);
+    }
+
+    @Test
+    public void shouldPassSlotToReplacement_withoutFreeingIt() {
+        // given
+        FairQueue queue = new FairQueue("run", 1, 1, 100);
+        Solution active = solution("player", 1);
+        Solution pending = solution("player", 2);
+        submit(queue, active);
+        submit(queue, solution("other", 3));
+
+        // when
+        queue.handover(active, pending);
+        queue.release(active);
+
+        // then
+        assertEquals(admitted.toString(), "[player1]");
+        assertEquals(queue.getActive(), 1);
+
+        // when
+        queue.release(pending);
+
+        // then
+        assertEquals(admitted.toString(), "[player1, other3]");
+    }
+}
@@ -0,0 +1,152 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.model.TokenTest;
+import com.codenjoy.clientrunner.service.facade.BuildContext;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import lombok.SneakyThrows;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+public class ImageCacheTest {
+
+    private static final long MB = 1024L * 1024L;
+    private static final String SERVER_URL = TokenTest.VALID_SERVER_URL;
+
+    private DockerService docker;
+    private DockerConfig config;
+    private ImageCache cache;
+
+    @BeforeMethod
+    public void setup() {
+        docker = mock(DockerService.class);
+        when(docker.isImageExists(anyString())).thenReturn(true);
+        when(docker.getImageSize(anyString())).thenReturn(100 * MB);
+
+        config = new DockerConfig();
+        config.setImageCache(new DockerConfig.ImageCache());
+        config.getImageCache().setCount(2);
+        config.getImageCache().setSizeMB(1000);
+
+        cache = new ImageCache(config, docker);
+    }
+
+    @SneakyThrows
+    private BuildContext context(String main) {
+        Path path = Files.createTempDirectory("sources");
+        Files.writeString(path.resolve("pom.xml"), "<project/>");
+        Files.writeString(path.resolve("Main.java"), main);
+        return context(path.toFile());
+    }
+
+    @SneakyThrows
+    private BuildContext context(File sources) {
+        return BuildContext.of(sources, "FROM java".getBytes(), path -> false);
+    }
+
+    @Test
+    public void shouldGenerateSameKey_forSameSources_exceptLogs() throws Exception {
+        // given
+        BuildContext first = context("class Main {}");
+        BuildContext second = context("class Main {}");
+        Files.writeString(new File(second.getSources(), "build.log").toPath(), "log");
+        second = context(second.getSources());
+
+        // when then
+        assertEquals(cache.key(second, SERVER_URL), cache.key(first, SERVER_URL));
+        assertNotEquals(cache.key(context("class Other {}"), SERVER_URL), cache.key(first, SERVER_URL));
+        assertNotEquals(cache.key(first, SERVER_URL + "1"), cache.key(first, SERVER_URL));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedImage_whenCountLimitExceeded() {
+        // given
+        cache.put("1", "image1");
+        cache.put("2", "image2");
+        cache.get("1");
+
+        // when
+        cache.put("3", "image3");
+
+        // then
+        assertEquals(cache.get("2"), Optional.empty());
+        assertEquals(cache.get("1"), Optional.of("image1"));
+        assertEquals(cache.get("3"), Optional.of("image3"));
+        verify(docker).removeImage("image2");
+        assertEquals(cache.getBytes(), 200 * MB);
+    }
+
+    @Test
+    public void shouldNotifyListener_whenEvictedImageRemoved() {
+        // given
+        List<String> removed = new ArrayList<>();
+        cache.onRemoved(removed::add);
+        cache.put("1", "image1");
+        cache.put("2", "image2");
+
+        // when
+        cache.put("3", "image3");
+
+        // then
+        assertEquals(removed, List.of("image1"));
+    }
+
+    @Test
+    public void shouldNotNotifyListener_whenEvictedImageIsStillUsed() {
+        // given
+        List<String> removed = new ArrayList<>();
+        cache.onRemoved(removed::add);
+        doThrow(new RuntimeException("conflict")).when(docker).removeImage("image1");
+        cache.put("1", "image1");
+        cache.put("2", "image2");
+
+        // when
+        cache.put("3", "image3");
+
+        // then
+        assertEquals(removed, List.of());
+    }
+
+    @Test
+    public void shouldEvictImages_whenSizeLimitExceeded_butKeepJustBuilt() {
+        // given
+        config.getImageCache().setSizeMB(150);
+        cache.put("1", "image1");
+        when(docker.getImageSize("image2")).thenReturn(200 * MB);
+
+        // when
+        cache.put("2", "image2");
+
+        // then
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.get("2"), Optional.of("image2"));
+        verify(docker).removeImage("image1");
+    }
+
+    @Test
+    public void shouldMiss_whenCachedImageRemovedOutside() {
+        // given
+        cache.put("1", "image1");
+        when(docker.isImageExists("image1")).thenReturn(false);
+
+        // when
+        Optional<String> image = cache.get("1");
+
+        // then
+        assertEquals(image, Optional.empty());
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getMisses(), 1);
+    }
+}
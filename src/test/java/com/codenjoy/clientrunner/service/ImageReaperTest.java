@@ -0,0 +1,205 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.model.TokenTest;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.function.Consumer;
+
+import static com.codenjoy.clientrunner.model.Platform.JAVA;
+import static com.codenjoy.clientrunner.model.Solution.Status.FINISHED;
+import static com.codenjoy.clientrunner.model.Solution.Status.RUNNING;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+public class ImageReaperTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    private static final String OTHER_SERVER_URL
+            = "http://5.189.144.144/codenjoy-contest/board/player/Luigi?code=111111111111";
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private DockerService docker;
+    private ImageCache cache;
+    private DockerConfig.ImageReaper config;
+    private ImageReaper reaper;
+    private Token token;
+
+    @BeforeMethod
+    public void setup() {
+        docker = mock(DockerService.class);
+        when(docker.getImageSize(anyString())).thenReturn(100 * MB);
+        when(docker.removeImage(anyString())).thenReturn(true);
+        cache = mock(ImageCache.class);
+
+        config = new DockerConfig.ImageReaper();
+        config.setIntervalSec(3600);
+        config.setKeepPerPlayer(2);
+        config.setSizeLimitMB(1000);
+        config.setMaxAgeMin(60);
+        DockerConfig dockerConfig = new DockerConfig();
+        dockerConfig.setImageReaper(config);
+
+        reaper = new ImageReaper(dockerConfig, docker, cache);
+        reaper.init();
+        token = TokenTest.generateValidToken();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        reaper.shutdown();
+    }
+
+    private Solution track(Token token, String imageId, Solution.Status status) {
+        Solution solution = Solution.restore(token, new File("./"), JAVA, status);
+        reaper.track(solution, imageId);
+        return solution;
+    }
+
+    @Test
+    public void shouldKeepLastImagesOfEachPlayer() {
+        // given
+        Token other = Token.from(OTHER_SERVER_URL, SERVER_URL_PATTERN);
+        track(token, "image1", FINISHED);
+        track(token, "image2", FINISHED);
+        track(other, "image3", FINISHED);
+        track(token, "image4", FINISHED);
+
+        // when
+        reaper.reap();
+
+        // then
+        verify(docker).removeImage("image1");
+        verify(docker, times(1)).removeImage(anyString());
+        assertEquals(reaper.size(), 3);
+        assertEquals(reaper.getRemoved(), 1);
+    }
+
+    @Test
+    public void shouldNotRemoveImages_ofActiveSolutions_orCached() {
+        // given
+        config.setKeepPerPlayer(0);
+        track(token, "image1", RUNNING);
+        track(token, "image2", FINISHED);
+        track(token, "image3", FINISHED);
+        when(cache.contains("image2")).thenReturn(true);
+
+        // when
+        reaper.reap();
+
+        // then
+        verify(docker).removeImage("image3");
+        verify(docker, never()).removeImage("image1");
+        verify(docker, never()).removeImage("image2");
+    }
+
+    @Test
+    public void shouldRemoveOldestImages_whenSizeLimitExceeded() {
+        // given
+        config.setSizeLimitMB(250);
+        config.setKeepPerPlayer(10);
+        track(token, "image1", RUNNING);
+        track(token, "image2", FINISHED);
+        track(token, "image3", FINISHED);
+        track(token, "image4", FINISHED);
+
+        // when
+        reaper.reap();
+
+        // then
+        verify(docker).removeImage("image2");
+        verify(docker).removeImage("image3");
+        verify(docker, never()).removeImage("image4");
+        assertEquals(reaper.getReclaimedBytes(), 200 * MB);
+    }
+
+    @Test
+    public void shouldRemoveImages_whenMaxAgeExceeded() {
+        // given
+        config.setMaxAgeMin(0);
+        track(token, "image1", FINISHED);
+        track(token, "image2", RUNNING);
+
+        // when
+        reaper.reap();
+
+        // then
+        verify(docker).removeImage("image1");
+        verify(docker, never()).removeImage("image2");
+    }
+
+    @Test
+    public void shouldKeepImage_whenDockerCanNotRemoveIt() {
+        // given
+        config.setMaxAgeMin(0);
+        track(token, "image1", FINISHED);
+        doThrow(new RuntimeException("conflict")).when(docker).removeImage("image1");
+
+        // when
+        reaper.reap();
+
+        // then
+        assertEquals(reaper.size(), 1);
+        assertEquals(reaper.getRemoved(), 0);
+    }
+
+    @Test
+    public void shouldNotCountRemoval_whenImageWasRemovedOutside() {
+        // given
+        config.setMaxAgeMin(0);
+        track(token, "image1", FINISHED);
+        when(docker.removeImage("image1")).thenReturn(false);
+
+        // when
+        reaper.reap();
+
+        // then
+        assertEquals(reaper.size(), 0);
+        assertEquals(reaper.getRemoved(), 0);
+        assertEquals(reaper.getReclaimedBytes(), 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldUntrackImage_whenCacheRemovedIt() {
+        // given
+        track(token, "image1", FINISHED);
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(cache).onRemoved(listener.capture());
+
+        // when
+        listener.getValue().accept("image1");
+
+        // then
+        assertEquals(reaper.size(), 0);
+    }
+
+    @Test
+    public void shouldStartWithoutReaping_whenIntervalIsZero() {
+        // given
+        reaper.shutdown();
+        config.setIntervalSec(0);
+        DockerConfig dockerConfig = new DockerConfig();
+        dockerConfig.setImageReaper(config);
+        reaper = new ImageReaper(dockerConfig, docker, cache);
+
+        // when
+        reaper.init();
+        track(token, "image1", FINISHED);
+
+        // then
+        assertEquals(reaper.size(), 1);
+        verify(docker, never()).removeImage(anyString());
+    }
+}
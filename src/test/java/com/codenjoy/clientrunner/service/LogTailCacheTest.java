@@ -0,0 +1,115 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.TokenTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static com.codenjoy.clientrunner.model.LogType.BUILD;
+import static com.codenjoy.clientrunner.model.LogType.RUNTIME;
+import static com.codenjoy.clientrunner.model.Platform.JAVA;
+import static com.codenjoy.clientrunner.model.Solution.Status.*;
+import static org.testng.Assert.assertEquals;
+
+public class LogTailCacheTest {
+
+    private ClientServerServiceConfig config;
+    private LogTailCache cache;
+    private Solution solution;
+
+    @BeforeMethod
+    public void setup() {
+        ClientServerServiceConfig.Tail tail = new ClientServerServiceConfig.Tail();
+        tail.setLines(3);
+        tail.setMemoryLimitMB(1);
+        config = new ClientServerServiceConfig();
+        config.setTail(tail);
+
+        cache = new LogTailCache(config);
+        solution = newSolution(1);
+    }
+
+    private Solution newSolution(int id) {
+        Solution result = Solution.restore(TokenTest.generateValidToken(), new File("./"), JAVA, RUNNING);
+        result.setId(id);
+        return result;
+    }
+
+    private void write(Solution solution, long from, long to) {
+        LongStream.range(from, to)
+                .forEach(line -> cache.onLine(solution, RUNTIME, line, "line " + line));
+    }
+
+    @Test
+    public void shouldReadTail_fromMemory() {
+        // given
+        write(solution, 0, 5);
+
+        // when then
+        assertEquals(cache.read(solution, RUNTIME, 2).get().toString(), "[line 2, line 3, line 4]");
+        assertEquals(cache.read(solution, RUNTIME, 4).get().toString(), "[line 4]");
+        assertEquals(cache.read(solution, RUNTIME, 5).get().toString(), "[]");
+        assertEquals(cache.read(solution, RUNTIME, 10).get().toString(), "[]");
+    }
+
+    @Test
+    public void shouldFallback_whenOffsetOlderThanBuffer() {
+        // given
+        write(solution, 0, 5);
+
+        // when then
+        assertEquals(cache.read(solution, RUNTIME, 1), Optional.empty());
+        assertEquals(cache.read(solution, BUILD, 0), Optional.empty());
+    }
+
+    @Test
+    public void shouldReplaceLine_whenPartialLineCompleted() {
+        // given
+        write(solution, 0, 2);
+        cache.onLine(solution, RUNTIME, 2, "partial");
+
+        // when
+        cache.onLine(solution, RUNTIME, 2, "partial completed");
+
+        // then
+        assertEquals(cache.read(solution, RUNTIME, 0).get().toString(),
+                "[line 0, line 1, partial completed]");
+    }
+
+    @Test
+    public void shouldEvict_whenSolutionFinished() {
+        // given
+        write(solution, 0, 5);
+
+        // when
+        solution.setStatus(KILLED);
+        cache.evict(solution);
+        write(solution, 5, 6);
+
+        // then
+        assertEquals(cache.read(solution, RUNTIME, 4), Optional.empty());
+        assertEquals(cache.getBytes(), 0);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed_whenMemoryLimitExceeded() {
+        // given
+        config.getTail().setLines(1000);
+        Solution other = newSolution(2);
+        write(other, 0, 1000);
+
+        // when
+        String big = "x".repeat(1000);
+        LongStream.range(0, 500)
+                .forEach(line -> cache.onLine(solution, RUNTIME, line, big));
+
+        // then
+        assertEquals(cache.read(other, RUNTIME, 0), Optional.empty());
+        assertEquals(cache.read(solution, RUNTIME, 0).get().size(), 500);
+    }
+}
@@ -0,0 +1,182 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.model.TokenTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class PlayerExecutorTest {
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private static final String OTHER_SERVER_URL
+            = "http://5.189.144.144/codenjoy-contest/board/player/Luigi?code=111111111111";
+
+    private PlayerExecutor players;
+    private Token token;
+    private List<String> done;
+
+    @BeforeMethod
+    public void setup() {
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setPlayers(new ClientServerServiceConfig.Players());
+        config.getPlayers().setThreads(4);
+        players = new PlayerExecutor(config);
+        players.init();
+        token = TokenTest.generateValidToken();
+        done = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        players.shutdown();
+    }
+
+    private void busy(Token token, CountDownLatch started, CountDownLatch release) {
+        players.execute(token, () -> {
+            started.countDown();
+            await(release);
+            done.add("first");
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitIdle(PlayerExecutor players) throws InterruptedException {
+        for (int i = 0; i < 1000 && players.getBusy() > 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void shouldReturnBeforeTaskFinishes_andRunItInPool() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        String caller = Thread.currentThread().getName();
+
+        // when
+        players.execute(token, () -> {
+            await(release);
+            done.add(Thread.currentThread().getName());
+            finished.countDown();
+        });
+
+        // then
+        assertEquals(done, List.of());
+        assertEquals(players.getBusy(), 1);
+
+        // when
+        release.countDown();
+
+        // then
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(done.size(), 1);
+        assertTrue(done.get(0).startsWith("player-"));
+        assertTrue(!done.get(0).equals(caller));
+        awaitIdle(players);
+        assertEquals(players.getBusy(), 0);
+        assertEquals(players.getContended(), 0);
+    }
+
+    @Test
+    public void shouldQueueTask_andReturnAtOnce_whenPlayerIsBusy() throws Exception {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        busy(token, started, release);
+        await(started);
+        CountDownLatch second = new CountDownLatch(1);
+
+        // when
+        players.execute(token, () -> {
+            done.add("second");
+            second.countDown();
+        });
+
+        // then
+        assertEquals(done, List.of());
+        assertEquals(players.getContended(), 1);
+
+        // when
+        release.countDown();
+
+        // then
+        assertTrue(second.await(10, TimeUnit.SECONDS));
+        assertEquals(done, List.of("first", "second"));
+        awaitIdle(players);
+        assertEquals(players.getBusy(), 0);
+        assertEquals(players.getExecuted(), 2);
+        assertTrue(players.getWaitNanos() > 0);
+    }
+
+    @Test
+    public void shouldRunOtherPlayer_whenPlayerIsBusy() throws Exception {
+        // given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        busy(token, started, release);
+        await(started);
+        Token other = Token.from(OTHER_SERVER_URL, SERVER_URL_PATTERN);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        // when
+        players.execute(other, () -> {
+            done.add("other");
+            finished.countDown();
+        });
+
+        // then
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(done, List.of("other"));
+        assertEquals(players.getContended(), 0);
+
+        release.countDown();
+    }
+
+    @Test
+    public void shouldRunPlayerTasksOneByOne_inSubmissionOrder() throws Exception {
+        // given
+        int tasks = 1000;
+        ConcurrentMap<String, Boolean> running = new ConcurrentHashMap<>();
+        CountDownLatch finished = new CountDownLatch(tasks);
+        List<Boolean> overlapped = new CopyOnWriteArrayList<>();
+        List<Integer> order = new CopyOnWriteArrayList<>();
+
+        // when
+        for (int i = 0; i < tasks; i++) {
+            int index = i;
+            players.execute(token, () -> {
+                if (running.putIfAbsent(token.getPlayerId(), true) != null) {
+                    overlapped.add(true);
+                }
+                order.add(index);
+                Thread.yield();
+                running.remove(token.getPlayerId());
+                finished.countDown();
+            });
+        }
+
+        // then
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(overlapped, List.of());
+        for (int i = 0; i < tasks; i++) {
+            assertEquals((int) order.get(i), i);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.dto.ResourceSample;
+import com.codenjoy.clientrunner.dto.ResourceUsage;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.TokenTest;
+import com.codenjoy.clientrunner.service.facade.ContainerStats;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.codenjoy.clientrunner.model.Platform.JAVA;
+import static com.codenjoy.clientrunner.model.Solution.Status.FINISHED;
+import static com.codenjoy.clientrunner.model.Solution.Status.KILLED;
+import static com.codenjoy.clientrunner.model.Solution.Status.RUNNING;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ResourceSamplerTest {
+
+    private DockerService docker;
+    private SolutionRegistry solutions;
+    private ResourceSampler sampler;
+    private Consumer<ContainerStats> pending;
+    private long memory;
+
+    @BeforeMethod
+    public void setup() {
+        docker = mock(DockerService.class);
+        doAnswer(invocation -> {
+            Consumer<ContainerStats> callback = invocation.getArgument(1);
+            callback.accept(new ContainerStats(50.0, 3, memory += 100, 0));
+            return null;
+        }).when(docker).stats(anyString(), any());
+        solutions = new SolutionRegistry();
+
+        DockerConfig.Stats config = new DockerConfig.Stats();
+        config.setIntervalSec(0);
+        config.setSamples(3);
+        DockerConfig dockerConfig = new DockerConfig();
+        dockerConfig.setStats(config);
+
+        sampler = new ResourceSampler(dockerConfig, docker, solutions);
+        sampler.init();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        sampler.shutdown();
+    }
+
+    private Solution solution(int id, Solution.Status status) {
+        Solution solution = Solution.restore(TokenTest.generateValidToken(), new File("./"), JAVA, status);
+        solution.setId(id);
+        solution.setContainerId("container" + id);
+        solutions.add(solution);
+        return solution;
+    }
+
+    @Test
+    public void shouldSampleRunningContainersOnly() {
+        // given
+        Solution running = solution(1, RUNNING);
+        Solution finished = solution(2, FINISHED);
+
+        // when
+        sampler.sample();
+
+        // then
+        verify(docker).stats(eq("container1"), any());
+        verify(docker, never()).stats(eq("container2"), any());
+        assertEquals(sampler.samples(running).size(), 1);
+        assertEquals(sampler.usage(finished).isPresent(), false);
+    }
+
+    @Test
+    public void shouldKeepLastSamples_andPeakValues() {
+        // given
+        Solution solution = solution(1, RUNNING);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            sampler.sample();
+        }
+
+        // then
+        List<ResourceSample> samples = sampler.samples(solution);
+        assertEquals(samples.size(), 3);
+        assertEquals(samples.get(0).getMemory(), 300);
+        assertEquals(samples.get(2).getMemory(), 500);
+
+        ResourceUsage usage = sampler.usage(solution).get();
+        assertEquals(usage.getSamples(), 3);
+        assertEquals(usage.getCpu(), 50.0);
+        assertEquals(usage.getThrottledPeriods(), 3);
+        assertEquals(usage.getMemoryPeak(), 500);
+    }
+
+    @Test
+    public void shouldNotRequestAgain_whenPreviousRequestIsNotAnswered() {
+        // given
+        Solution solution = solution(1, RUNNING);
+        doAnswer(invocation -> {
+            pending = invocation.getArgument(1);
+            return null;
+        }).when(docker).stats(anyString(), any());
+
+        // when
+        sampler.sample();
+        sampler.sample();
+        pending.accept(new ContainerStats(10.0, 0, 100, 1));
+        sampler.sample();
+
+        // then
+        verify(docker, times(2)).stats(eq("container1"), any());
+        assertEquals(sampler.usage(solution).get().getMemoryLimitHits(), 1);
+    }
+
+    @Test
+    public void shouldShowOomKill_withoutSamples() {
+        // given
+        Solution solution = solution(1, FINISHED);
+
+        // when
+        sampler.oomKilled(solution);
+
+        // then
+        ResourceUsage usage = sampler.usage(solution).get();
+        assertTrue(usage.isOomKilled());
+        assertEquals(usage.getSamples(), 0);
+    }
+
+    @Test
+    public void shouldDropSamples_butKeepUsage_whenContainerStopped() {
+        // given
+        Solution solution = solution(1, RUNNING);
+        sampler.sample();
+        sampler.sample();
+        solution.setStatus(KILLED);
+
+        // when
+        sampler.stopped(solution);
+        sampler.sample();
+
+        // then
+        assertEquals(sampler.size(), 0);
+        assertEquals(sampler.samples(solution), List.of());
+        assertEquals(sampler.usage(solution).get().getMemoryPeak(), 200);
+
+        // when
+        sampler.evict(solution);
+
+        // then
+        assertEquals(sampler.usage(solution).isPresent(), false);
+    }
+}
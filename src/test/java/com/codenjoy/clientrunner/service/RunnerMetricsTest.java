@@ -0,0 +1,108 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.LogType;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.TokenTest;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import com.codenjoy.clientrunner.service.facade.LogFlusher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static com.codenjoy.clientrunner.model.Platform.JAVA;
+import static com.codenjoy.clientrunner.model.Solution.Status.ERROR;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class RunnerMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private SolutionRegistry solutions;
+    private LogFlusher logs;
+    private RunnerMetrics metrics;
+
+    @BeforeMethod
+    public void setup() {
+        ClientServerServiceConfig.Scheduler scheduler = new ClientServerServiceConfig.Scheduler();
+        scheduler.setBuilds(1);
+        scheduler.setRuns(1);
+        scheduler.setPerPlayer(1);
+        scheduler.setQueue(10);
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setScheduler(scheduler);
+        SolutionScheduler solutionScheduler = new SolutionScheduler(config);
+        solutionScheduler.init();
+
+        PlayerExecutor players = new PlayerExecutor(config);
+        registry = new SimpleMeterRegistry();
+        solutions = new SolutionRegistry();
+        logs = mock(LogFlusher.class);
+        metrics = new RunnerMetrics(registry, solutions, mock(TokenResolver.class),
+                mock(ImageCache.class), mock(ImageReaper.class), mock(WarmPool.class),
+                solutionScheduler, logs, mock(LogTailCache.class), mock(SolutionReaper.class),
+                mock(DockerService.class), players, new SubmissionDebouncer(config, players));
+        metrics.init();
+    }
+
+    private Solution solution(int id) {
+        Solution solution = Solution.from(TokenTest.generateValidToken(), new File("./"));
+        solution.setId(id);
+        return solution;
+    }
+
+    private double gauge(String status, String platform) {
+        return registry.get("runner.solutions")
+                .tags("status", status, "platform", platform)
+                .gauge().value();
+    }
+
+    @Test
+    public void shouldCountSolutions_byStatusAndPlatform() {
+        // given
+        solutions.add(solution(1));
+        solutions.add(solution(2));
+        Solution failed = solution(3);
+        failed.setStatus(ERROR);
+        solutions.add(failed);
+
+        // when then
+        assertEquals(gauge("NEW", "JAVA"), 2.0);
+        assertEquals(gauge("ERROR", "JAVA"), 1.0);
+        assertEquals(gauge("RUNNING", "JAVA"), 0.0);
+        assertEquals(gauge("NEW", RunnerMetrics.NONE), 0.0);
+    }
+
+    @Test
+    public void shouldReadLogBytes_writtenByFlusher() {
+        // given
+        when(logs.getWritten(LogType.RUNTIME, JAVA)).thenReturn(1024L);
+
+        // when
+        double bytes = registry.get("runner.log.bytes")
+                .tags("type", "RUNTIME", "platform", "JAVA")
+                .functionCounter().count();
+
+        // then
+        assertEquals(bytes, 1024.0);
+    }
+
+    @Test
+    public void shouldRecordBuildDuration_taggedByPlatform() {
+        // when
+        metrics.built(JAVA, "built", TimeUnit.MILLISECONDS.toNanos(200));
+        metrics.built(JAVA, "cached", TimeUnit.MILLISECONDS.toNanos(10));
+
+        // then
+        assertEquals(registry.get("runner.build")
+                .tags("platform", "JAVA", "result", "built")
+                .timer().totalTime(TimeUnit.MILLISECONDS), 200.0);
+        assertEquals(registry.get("runner.build")
+                .tags("platform", "JAVA")
+                .timers().size(), 2);
+    }
+}
@@ -0,0 +1,232 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.LogType;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.model.TokenTest;
+import com.codenjoy.clientrunner.service.facade.LogFlusher;
+import com.codenjoy.clientrunner.service.facade.LogWriter;
+import lombok.SneakyThrows;
+import org.apache.commons.io.FileUtils;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+public class SolutionEventsTest {
+
+    private ClientServerServiceConfig config;
+    private LogTailCache tails;
+    private SolutionEvents events;
+    private List<SseEmitter> emitters;
+    private Token token;
+    private Solution solution;
+
+    @BeforeMethod
+    public void setup() {
+        config = new ClientServerServiceConfig();
+        config.setStream(new ClientServerServiceConfig.Stream());
+        config.getStream().setThreads(2);
+        config.getStream().setBuffer(100);
+        config.getStream().setTimeout(1000);
+        config.setTail(new ClientServerServiceConfig.Tail());
+        config.getTail().setLines(100);
+        config.getTail().setMemoryLimitMB(10);
+        tails = new LogTailCache(config);
+        emitters = new CopyOnWriteArrayList<>();
+        events = new SolutionEvents(config, tails) {
+            @Override
+            SseEmitter emitter() {
+                SseEmitter emitter = mock(SseEmitter.class);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+        events.init();
+        token = TokenTest.generateValidToken();
+        solution = Solution.from(token, new File("./target/testSolutionEvents"));
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        events.shutdown();
+    }
+
+    @SneakyThrows
+    private List<String> sent(SseEmitter emitter, int count) {
+        ArgumentCaptor<SseEmitter.SseEventBuilder> captor
+                = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, timeout(1000).times(count)).send(captor.capture());
+        return captor.getAllValues().stream()
+                .map(SolutionEventsTest::name)
+                .collect(Collectors.toList());
+    }
+
+    private static String name(SseEmitter.SseEventBuilder event) {
+        // the first part is 'event:<name>\ndata:'
+        String text = event.build().iterator().next().getData().toString();
+        return text.substring("event:".length(), text.indexOf('\n'));
+    }
+
+    @SneakyThrows
+    private void assertNothingSentAfter(SseEmitter emitter, int count) {
+        verify(emitter, after(200).times(count)).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Consumer<Throwable> onError(SseEmitter emitter) {
+        ArgumentCaptor<Consumer<Throwable>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(emitter).onError(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void shouldSendStatus_whenSubscribed() {
+        // when
+        SseEmitter emitter = events.subscribe(solution, null, 0);
+
+        // then
+        assertEquals(emitters, List.of(emitter));
+        assertEquals(events.getSubscribers(), 1);
+        assertEquals(sent(emitter, 1), List.of(SolutionEvents.STATUS));
+    }
+
+    @Test
+    public void shouldSendStatusAndLog_whenSolutionChanged() {
+        // given
+        SseEmitter emitter = events.subscribe(solution, LogType.RUNTIME, 0);
+
+        // when
+        events.onStatus(solution);
+        events.onLine(solution, LogType.RUNTIME, 0, "line");
+        events.onLine(solution, LogType.BUILD, 0, "other type");
+
+        // then
+        assertEquals(sent(emitter, 3), List.of(SolutionEvents.STATUS,
+                SolutionEvents.STATUS, SolutionEvents.LOG));
+        assertNothingSentAfter(emitter, 3);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldSendPublishedLines_whenSubscribedBeforeTheyAreFlushed() {
+        // given
+        ClientServerServiceConfig.Logs logs = new ClientServerServiceConfig.Logs();
+        logs.setQueue(100);
+        logs.setBufferSize(1024 * 1024);
+        logs.setFlushIntervalMs(60_000);
+        logs.setWhenFull(ClientServerServiceConfig.Logs.WhenFull.DROP);
+        logs.setCloseTimeoutMs(1000);
+        config.setLogs(logs);
+        LogFlusher flusher = new LogFlusher(config);
+        flusher.init();
+        Path sources = Files.createDirectories(Path.of("./target/testSolutionEvents-" +
+                new Random().nextInt(Integer.MAX_VALUE)));
+        solution = Solution.from(token, sources.toFile());
+        solution.setStatus(Solution.Status.COMPILING);
+        solution.setStatus(Solution.Status.RUNNING);
+        LogWriter writer = flusher.writer(solution, false, tails.andThen(events));
+        writer.write("first");
+        writer.write("second");
+
+        try {
+            // when
+            SseEmitter emitter = events.subscribe(solution, LogType.RUNTIME, 0);
+
+            // then
+            assertEquals(new File(solution.getSources() + LogWriter.RUNTIME_LOG).length(), 0);
+            assertEquals(sent(emitter, 3), List.of(SolutionEvents.STATUS,
+                    SolutionEvents.LOG, SolutionEvents.LOG));
+        } finally {
+            flusher.shutdown();
+            FileUtils.deleteDirectory(sources.toFile());
+        }
+    }
+
+    @Test
+    public void shouldSendStatusOfAllSolutions_whenSubscribedByToken() {
+        // given
+        SseEmitter emitter = events.subscribe(token);
+
+        // when
+        events.onStatus(solution);
+        events.onStatus(Solution.from(token, new File("./target/testSolutionEvents")));
+
+        // then
+        assertEquals(sent(emitter, 2), List.of(SolutionEvents.STATUS, SolutionEvents.STATUS));
+    }
+
+    @Test
+    public void shouldUnsubscribe_whenEmitterCompleted() {
+        // given
+        SseEmitter emitter = events.subscribe(solution, null, 0);
+        sent(emitter, 1);
+        ArgumentCaptor<Runnable> onCompletion = ArgumentCaptor.forClass(Runnable.class);
+        verify(emitter).onCompletion(onCompletion.capture());
+
+        // when
+        onCompletion.getValue().run();
+        events.onStatus(solution);
+
+        // then
+        assertEquals(events.getSubscribers(), 0);
+        assertNothingSentAfter(emitter, 1);
+    }
+
+    @Test
+    public void shouldUnsubscribe_whenEmitterTimedOut() {
+        // given
+        SseEmitter emitter = events.subscribe(solution, null, 0);
+        sent(emitter, 1);
+        ArgumentCaptor<Runnable> onTimeout = ArgumentCaptor.forClass(Runnable.class);
+        verify(emitter).onTimeout(onTimeout.capture());
+
+        // when
+        onTimeout.getValue().run();
+        events.onStatus(solution);
+
+        // then
+        assertEquals(events.getSubscribers(), 0);
+        assertNothingSentAfter(emitter, 1);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldCompleteWithError_andUnsubscribe_whenClientDisconnected() {
+        // given
+        SseEmitter emitter = events.subscribe(solution, null, 0);
+        sent(emitter, 1);
+        IOException error = new IOException("Broken pipe");
+        doThrow(error).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+
+        // when
+        events.onStatus(solution);
+
+        // then
+        verify(emitter, timeout(1000)).completeWithError(error);
+
+        // when
+        onError(emitter).accept(error);
+        events.onStatus(solution);
+
+        // then
+        assertEquals(events.getSubscribers(), 0);
+        assertNothingSentAfter(emitter, 2);
+    }
+}
@@ -0,0 +1,208 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.TokenTest;
+import lombok.SneakyThrows;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.codenjoy.clientrunner.model.Platform.JAVA;
+import static com.codenjoy.clientrunner.model.Solution.Status.*;
+import static org.testng.Assert.assertEquals;
+
+public class SolutionJournalTest {
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private Path folder;
+    private ClientServerServiceConfig config;
+    private SolutionRegistry solutions;
+    private SolutionJournal journal;
+
+    @BeforeMethod
+    @SneakyThrows
+    public void setup() {
+        folder = Files.createDirectories(Path.of("./target/testSolutionJournal-" +
+                new Random().nextInt(Integer.MAX_VALUE)));
+
+        config = new ClientServerServiceConfig();
+        config.setServerRegex(SERVER_URL_PATTERN);
+        config.setTokens(new ClientServerServiceConfig.Tokens());
+        config.getTokens().setCacheSize(10);
+        config.setJournal(new ClientServerServiceConfig.Journal());
+        config.getJournal().setPath(folder.toString());
+        config.getJournal().setCompactRecords(1000);
+
+        solutions = new SolutionRegistry();
+        journal = journal();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        journal.shutdown();
+    }
+
+    private SolutionJournal journal() {
+        TokenResolver tokens = new TokenResolver(config);
+        tokens.init();
+        SolutionJournal result = new SolutionJournal(config, tokens, solutions);
+        result.init();
+        return result;
+    }
+
+    private Solution solution(int id) {
+        Solution solution = Solution.restore(TokenTest.generateValidToken(),
+                new File("./target/solution" + id), JAVA, NEW);
+        solution.setId(id);
+        return solution;
+    }
+
+    @Test
+    public void shouldRestoreLastState_ofEachSolution() {
+        // given
+        Solution first = solution(1);
+        journal.save(first);
+        Solution second = solution(2);
+        journal.save(second);
+        second.setStatus(COMPILING);
+        second.setStatus(RUNNING);
+        second.setImageId("image");
+        second.setContainerId("container");
+        journal.save(second);
+        journal.flushQueued();
+
+        // when
+        List<Solution> loaded = journal().load();
+
+        // then
+        assertEquals(loaded.size(), 2);
+        assertEquals(loaded.get(0).getId(), 1);
+        assertEquals(loaded.get(0).getStatus(), NEW);
+        Solution restored = loaded.get(1);
+        assertEquals(restored.getStatus(), RUNNING);
+        assertEquals(restored.getContainerId(), "container");
+        assertEquals(restored.getPlayerId(), TokenTest.PLAYER_ID);
+        assertEquals(restored.getPlatform(), JAVA);
+        assertEquals(restored.getSources(), second.getSources());
+        assertEquals(restored.getCreated(), second.getCreated());
+    }
+
+    @Test
+    public void shouldNotRestoreRemovedSolutions() {
+        // given
+        Solution solution = solution(1);
+        journal.save(solution);
+        journal.save(solution(2));
+
+        // when
+        journal.remove(solution);
+        journal.flushQueued();
+
+        // then
+        List<Solution> loaded = journal().load();
+        assertEquals(loaded.size(), 1);
+        assertEquals(loaded.get(0).getId(), 2);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldSkipBrokenRecords() {
+        // given
+        journal.save(solution(1));
+        journal.flushQueued();
+        Files.writeString(folder.resolve(SolutionJournal.FILENAME), "{\"id\":2,\"sta",
+                StandardOpenOption.APPEND);
+
+        // when
+        List<Solution> loaded = journal().load();
+
+        // then
+        assertEquals(loaded.size(), 1);
+        assertEquals(loaded.get(0).getId(), 1);
+    }
+
+    @Test
+    public void shouldRewriteJournal_withCurrentSolutionsOnly() {
+        // given
+        Solution removed = solution(1);
+        journal.save(removed);
+        Solution current = solution(2);
+        solutions.add(current);
+        for (Solution.Status status : List.of(COMPILING, RUNNING, KILLED)) {
+            current.setStatus(status);
+            journal.save(current);
+        }
+        current.finish();
+        journal.save(current);
+
+        // when
+        journal.compact();
+        journal.save(solution(3));
+        journal.flushQueued();
+
+        // then
+        assertEquals(journal.getRecords(), 2);
+        List<Solution> loaded = journal().load();
+        assertEquals(loaded.size(), 2);
+        assertEquals(loaded.get(0).getStatus(), FINISHED);
+        assertEquals(loaded.get(1).getId(), 3);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldNotCompact_untilRecordsAreTwiceAsManyAsLiveSolutions() {
+        // given
+        config.getJournal().setCompactRecords(2);
+        for (int id = 1; id <= 3; id++) {
+            solutions.add(solution(id));
+        }
+        journal.compact();
+
+        // when
+        journal.save(solution(1));
+        journal.save(solution(2));
+        journal.flushQueued();
+
+        // then
+        assertEquals(journal.getRecords(), 5);
+
+        // when
+        journal.save(solution(3));
+
+        // then
+        for (int i = 0; i < 100 && journal.getRecords() != 3; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(journal.getRecords(), 3);
+    }
+
+    @Test
+    public void shouldWriteQueuedRecords_whenShutdown() {
+        // given
+        config.getJournal().setCompactRecords(10_000);
+        List<Solution> saved = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            saved.add(solution(id));
+        }
+
+        // when
+        saved.forEach(journal::save);
+        journal.shutdown();
+
+        // then
+        // queued records are written before the journal thread stops
+        assertEquals(journal.getRecords(), 1000);
+        assertEquals(journal().load().size(), 1000);
+    }
+}
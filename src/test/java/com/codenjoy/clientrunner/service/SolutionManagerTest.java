@@ -7,6 +7,7 @@ import com.codenjoy.clientrunner.dto.SolutionSummary;
 import com.codenjoy.clientrunner.exception.SolutionNotFoundException;
 import com.codenjoy.clientrunner.model.Solution;
 import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.service.facade.BuildContext;
 import com.codenjoy.clientrunner.service.facade.DockerService;
 import com.codenjoy.clientrunner.service.facade.LogWriter;
 import lombok.SneakyThrows;
@@ -23,22 +24,27 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.Closeable;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.function.Consumer;
 
 import static com.codenjoy.clientrunner.ExceptionAssert.expectThrows;
 import static com.codenjoy.clientrunner.model.Solution.Status.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
 
-@SpringBootTest
+@SpringBootTest(properties = "service.journal.path=")
 @TestExecutionListeners(MockitoTestExecutionListener.class)
 public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
 
@@ -51,6 +57,12 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
     @Autowired
     private SolutionManager solutionManager;
 
+    @Autowired
+    private SolutionScheduler scheduler;
+
+    @Autowired
+    private SolutionRegistry solutions;
+
     private File sources;
     private Token token;
     private int id;
@@ -79,12 +91,15 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
     }
 
     @Test
-    public void shouldAddDockerfile_whenRunSolution_withValidTokenAndSources() {
+    public void shouldPassDockerfileInBuildContext_withoutCopyToSources() {
         // when
         solutionManager.runSolution(token, sources);
 
         // then
-        assertEquals(Files.exists(Path.of(sources.getPath(), "Dockerfile")), true);
+        verify(dockerService).buildImage(argThat(context ->
+                context.getDockerfile().length > 0
+                        && context.getFiles().equals(List.of("pom.xml"))), any(), any(), any());
+        assertEquals(Files.exists(Path.of(sources.getPath(), "Dockerfile")), false);
     }
 
     @Test
@@ -125,7 +140,8 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
         List<String> logs = solutionManager.getLogs(token, id, LogType.BUILD, 0);
 
         // then
-        assertEquals(logs.toString(), "[Building started, Building finished]");
+        assertEquals(logs.toString(), "[Build context: 1 files, 0 files excluded (0 bytes), " +
+                "Building started, Building finished]");
     }
 
     @Test
@@ -149,7 +165,8 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
         List<String> logs = solutionManager.getLogs(token, id, LogType.BUILD, 0);
 
         // then
-        assertEquals(logs.toString(), "[Building started, Building finished]");
+        assertEquals(logs.toString(), "[Build context: 1 files, 0 files excluded (0 bytes), " +
+                "Building started, Building finished]");
     }
 
     @Test
@@ -195,6 +212,43 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
         assertNotEquals(solution.getFinished(), null);
     }
 
+    @Test
+    public void shouldRemoveContainer_whenCanNotInspectIt() {
+        // given
+        String containerId = "containerId";
+        whenImageBuilt_thenRunContainer("imageId");
+        when(dockerService.createContainer(anyString(), any())).thenReturn(containerId);
+        when(dockerService.isOomKilled(containerId)).thenThrow(new RuntimeException("daemon is gone"));
+        whenWaitContainer_thenFinishedSolution();
+
+        // when
+        solutionManager.runSolution(token, sources);
+
+        // then
+        verify(dockerService).removeContainer(containerId);
+    }
+
+    @Test
+    public void shouldRunCachedImage_whenRunSolution_withSameSources() {
+        // given
+        String imageId = "imageId";
+        whenImageBuilt_thenRunContainer(imageId);
+        when(dockerService.createContainer(anyString(), any())).thenReturn("containerId");
+        when(dockerService.isImageExists(imageId)).thenReturn(true);
+        solutionManager.runSolution(token, sources);
+        generateJavaSources();
+
+        // when
+        id = solutionManager.runSolution(token, sources);
+
+        // then
+        verify(dockerService, times(1)).buildImage(any(), any(), any(), any());
+        verify(dockerService, times(2)).createContainer(same(imageId), any());
+        assertEquals(statusOf(id), RUNNING);
+        assertEquals(solutionManager.getLogs(token, id, LogType.BUILD, 0).toString(),
+                "[Using cached image imageId]");
+    }
+
     private void whenWaitContainer_thenFinishedSolution() {
         doAnswer(invocation -> {
             invocation.getArgument(1, Runnable.class).run();
@@ -230,7 +284,8 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
         solutionManager.runSolution(token, sources);
 
         // then
-        verify(dockerService, only()).buildImage(same(sources), same(token.getServerUrl()), any(), any());
+        verify(dockerService, only()).buildImage(argThat(context -> context.getSources() == sources),
+                same(token.getServerUrl()), any(), any());
     }
 
     @Test
@@ -239,7 +294,7 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
         // given
         doThrow(RuntimeException.class)
                 .when(dockerService)
-                .buildImage(isA(File.class), anyString(), any(), any());
+                .buildImage(isA(BuildContext.class), anyString(), any(), any());
 
         // when
         id = solutionManager.runSolution(token, sources);
@@ -263,6 +318,120 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
         assertEquals(statusOf(id3).isActive(), true);
     }
 
+    @Test
+    public void shouldKeepNewestSolution_whenSubmissionsAreSupersededInReverseOrder() {
+        // given
+        Solution older = solutionManager.register(token, sources);
+        Solution newer = solutionManager.register(token, sources);
+
+        // when
+        boolean newerRuns = solutionManager.supersede(token, newer);
+        boolean olderRuns = solutionManager.supersede(token, older);
+
+        // then
+        assertEquals(newerRuns, true);
+        assertEquals(olderRuns, false);
+        assertEquals(statusOf(older.getId()), KILLED);
+        assertEquals(statusOf(newer.getId()), CLONING);
+    }
+
+    @Test
+    public void shouldKeepOldContainerRunning_untilNewOneIsStarted_whenBlueGreen() {
+        // given
+        when(config.isBlueGreen()).thenReturn(true);
+        List<Consumer<String>> builds = whenImageBuilt_thenWait();
+        when(dockerService.createContainer(anyString(), any())).thenReturn("old", "new");
+        int active = solutionManager.runSolution(token, sources);
+        builds.get(0).accept("oldImage");
+        generateJavaSources();
+
+        // when
+        int pending = solutionManager.runSolution(token, sources);
+
+        // then
+        assertEquals(statusOf(active), RUNNING);
+        assertEquals(statusOf(pending), COMPILING);
+        assertEquals(solutionManager.getSolutionSummary(token, active).getPending(), pending);
+        assertEquals(solutionManager.getSolutionSummary(token, pending).getActive(), active);
+        verify(dockerService, never()).killContainer(any());
+
+        // when
+        builds.get(1).accept("newImage");
+
+        // then
+        InOrder inOrder = inOrder(dockerService);
+        inOrder.verify(dockerService).startContainer("new");
+        inOrder.verify(dockerService).killContainer("old");
+        assertEquals(statusOf(active), KILLED);
+        assertEquals(statusOf(pending), RUNNING);
+        assertEquals(solutionManager.getSolutionSummary(token, active).getPending(), null);
+        assertEquals(solutionManager.getSolutionSummary(token, pending).getActive(), null);
+    }
+
+    @Test
+    public void shouldKeepOldContainerRunning_whenNewBuildFails_andBlueGreen() {
+        // given
+        when(config.isBlueGreen()).thenReturn(true);
+        List<Consumer<String>> builds = whenImageBuilt_thenWait();
+        when(dockerService.createContainer(anyString(), any())).thenReturn("old");
+        int active = solutionManager.runSolution(token, sources);
+        builds.get(0).accept("oldImage");
+        generateJavaSources();
+        int pending = solutionManager.runSolution(token, sources);
+
+        // when
+        builds.get(1).accept(null);
+
+        // then
+        assertEquals(statusOf(active), RUNNING);
+        assertEquals(statusOf(pending), ERROR);
+        verify(dockerService, never()).killContainer(any());
+        assertEquals(solutionManager.getSolutionSummary(token, active).getPending(), null);
+    }
+
+    @Test
+    public void shouldTakeRunSlot_whenActiveContainerExitedBeforeSwap_andBlueGreen() {
+        // given
+        when(config.isBlueGreen()).thenReturn(true);
+        List<Consumer<String>> builds = whenImageBuilt_thenWait();
+        when(dockerService.createContainer(anyString(), any())).thenReturn("old", "new");
+        Map<String, Runnable> exits = new HashMap<>();
+        doAnswer(invocation -> {
+            exits.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(dockerService).waitContainer(any(), any());
+        int active = solutionManager.runSolution(token, sources);
+        builds.get(0).accept("oldImage");
+        generateJavaSources();
+        int pending = solutionManager.runSolution(token, sources);
+        exits.get("old").run();
+
+        // when
+        builds.get(1).accept("newImage");
+
+        // then
+        assertEquals(statusOf(active).isActive(), false);
+        assertEquals(statusOf(pending), RUNNING);
+        verify(dockerService, never()).killContainer(any());
+        assertEquals(scheduler.holdsRun(solutions.get(token, pending).get()), true);
+
+        // when
+        exits.get("new").run();
+
+        // then
+        assertEquals(scheduler.holdsRun(solutions.get(token, pending).get()), false);
+    }
+
+    private List<Consumer<String>> whenImageBuilt_thenWait() {
+        List<Consumer<String>> builds = new ArrayList<>();
+        doAnswer(invocation -> {
+            invocation.getArgument(2, LogWriter.class).close();
+            builds.add(invocation.getArgument(3));
+            return null;
+        }).when(dockerService).buildImage(any(), any(), any(), any());
+        return builds;
+    }
+
     @Test
    public void shouldDontRunSolution_whenKillItImmediately_afterRunIt() {
         // given
@@ -298,6 +467,23 @@ public class SolutionManagerTest extends AbstractTestNGSpringContextTests {
         assertEquals(statusOf(id).isActive(), false);
     }
 
+    @Test
+    @SneakyThrows
+    public void shouldCancelBuild_whenKill_withCompilingSolution() {
+        // given
+        Closeable build = mock(Closeable.class);
+        when(dockerService.buildImage(any(), any(), any(), any())).thenReturn(build);
+        id = solutionManager.runSolution(token, sources);
+        assertEquals(statusOf(id), COMPILING);
+
+        // when
+        solutionManager.kill(token, id);
+
+        // then
+        verify(build).close();
+        assertEquals(statusOf(id), KILLED);
+    }
+
     @Test
     public void shouldThrowAnException_whenKill_withNonExistingSolution() {
         // given
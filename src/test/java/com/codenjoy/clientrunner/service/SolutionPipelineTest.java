@@ -0,0 +1,247 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.model.TokenTest;
+import com.codenjoy.clientrunner.service.facade.GitService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static com.codenjoy.clientrunner.model.Solution.Status.CLONING;
+import static com.codenjoy.clientrunner.model.Solution.Status.KILLED;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+public class SolutionPipelineTest {
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private static final String OTHER_SERVER_URL
+            = "http://5.189.144.144/codenjoy-contest/board/player/Luigi?code=111111111111";
+
+    private static final String REPO = "https://github.com/codenjoyme/codenjoy-javascript-client.git";
+
+    private GitService git;
+    private SolutionManager solutionManager;
+    private RunnerMetrics metrics;
+    private PlayerExecutor players;
+    private SubmissionDebouncer debouncer;
+    private SolutionPipeline pipeline;
+    private Token token;
+    private File sources;
+    private int ids;
+    private List<Solution> registered;
+
+    @BeforeMethod
+    public void setup() {
+        git = mock(GitService.class);
+        solutionManager = mock(SolutionManager.class);
+        token = TokenTest.generateValidToken();
+        sources = new File("./target/testPipelineSources");
+        metrics = mock(RunnerMetrics.class);
+        registered = new CopyOnWriteArrayList<>();
+
+        when(solutionManager.register(any(), any())).thenAnswer(invocation -> {
+            Solution solution = Solution.cloning(invocation.getArgument(0), sources);
+            solution.setId(++ids);
+            registered.add(solution);
+            return solution;
+        });
+        when(solutionManager.supersede(any(), any())).thenReturn(true);
+
+        pipeline(config(1, 1));
+    }
+
+    private void pipeline(ClientServerServiceConfig config) {
+        SolutionScheduler scheduler = new SolutionScheduler(config);
+        scheduler.init();
+        players = new PlayerExecutor(config);
+        players.init();
+        debouncer = new SubmissionDebouncer(config, players);
+        debouncer.init();
+        pipeline = new SolutionPipeline(config, git, solutionManager, scheduler,
+                metrics, debouncer);
+        pipeline.init();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        shutdown();
+    }
+
+    private void shutdown() {
+        pipeline.shutdown();
+        debouncer.shutdown();
+        players.shutdown();
+    }
+
+    private ClientServerServiceConfig config(int threads, int queue) {
+        ClientServerServiceConfig.Pipeline.Stage stage = new ClientServerServiceConfig.Pipeline.Stage();
+        stage.setThreads(threads);
+        stage.setQueue(queue);
+
+        ClientServerServiceConfig.Pipeline pipeline = new ClientServerServiceConfig.Pipeline();
+        pipeline.setClone(stage);
+        pipeline.setPrepare(stage);
+        pipeline.setBuild(stage);
+        pipeline.setRun(stage);
+
+        ClientServerServiceConfig.Scheduler scheduler = new ClientServerServiceConfig.Scheduler();
+        scheduler.setBuilds(threads);
+        scheduler.setRuns(threads);
+        scheduler.setPerPlayer(1);
+        scheduler.setQueue(queue);
+
+        ClientServerServiceConfig.Players players = new ClientServerServiceConfig.Players();
+        players.setThreads(threads);
+
+        ClientServerServiceConfig.Debounce debounce = new ClientServerServiceConfig.Debounce();
+        debounce.setWindowMs(0);
+
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setPipeline(pipeline);
+        config.setPlayers(players);
+        config.setDebounce(debounce);
+        config.setScheduler(scheduler);
+        return config;
+    }
+
+    @Test
+    public void shouldReturnSolutionId_beforeRepositoryCloned() throws Exception {
+        // given
+        CountDownLatch cloning = new CountDownLatch(1);
+        when(git.clone(anyString(), any(), any())).thenAnswer(invocation -> {
+            cloning.await();
+            return true;
+        });
+
+        // when
+        int id = pipeline.submit(token, REPO, sources);
+
+        // then
+        assertEquals(id, 1);
+        verify(solutionManager, never()).prepare(any());
+
+        // when
+        cloning.countDown();
+
+        // then
+        verify(solutionManager, timeout(1000)).prepare(argThat(s -> s.getId() == 1));
+    }
+
+    @Test
+    public void shouldRunAllStages_whenRepositoryCloned() {
+        // given
+        when(git.clone(anyString(), any(), any())).thenReturn(true);
+        when(solutionManager.prepare(any())).thenReturn(true);
+        when(solutionManager.build(any(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, Consumer.class).accept("imageId");
+            return true;
+        });
+
+        // when
+        pipeline.submit(token, REPO, sources);
+
+        // then
+        verify(solutionManager, timeout(1000)).runContainer(any(), eq("imageId"));
+        verify(solutionManager, never()).fail(any(), any());
+    }
+
+    @Test
+    public void shouldFailSolution_whenRepositoryIsNotCloned() {
+        // given
+        when(git.clone(anyString(), any(), any())).thenReturn(false);
+
+        // when
+        pipeline.submit(token, REPO, sources);
+
+        // then
+        verify(solutionManager, timeout(1000)).fail(any(), eq("Can not clone repository: " + REPO));
+        verify(solutionManager, never()).prepare(any());
+    }
+
+    @Test
+    public void shouldStopSolution_whenSupersededWhileCloning() {
+        // given
+        when(git.clone(anyString(), any(), any())).thenAnswer(invocation -> {
+            registered.get(0).setStatus(KILLED);
+            return !invocation.getArgument(2, BooleanSupplier.class).getAsBoolean();
+        });
+
+        // when
+        pipeline.submit(token, REPO, sources);
+
+        // then
+        verify(metrics, timeout(1000)).cancelled("clone");
+        verify(metrics, never()).cloned(anyLong(), anyBoolean());
+        verify(solutionManager, never()).fail(any(), any());
+        verify(solutionManager, never()).prepare(any());
+    }
+
+    @Test
+    public void shouldFailSolution_whenStageQueueIsFull() throws Exception {
+        // given
+        CountDownLatch cloning = new CountDownLatch(1);
+        when(git.clone(anyString(), any(), any())).thenAnswer(invocation -> {
+            cloning.await();
+            return false;
+        });
+
+        // when
+        pipeline.submit(token, REPO, sources); // in progress
+        Thread.sleep(100);
+        pipeline.submit(token, REPO, sources); // in queue
+        pipeline.submit(token, REPO, sources); // rejected
+
+        // then
+        verify(solutionManager, timeout(1000)).fail(argThat(s -> s.getId() == 3 && s.getStatus() == CLONING),
+                eq("Too many solutions in 'clone' stage, please try again later"));
+
+        cloning.countDown();
+    }
+
+    @Test
+    public void shouldNotHoldBuildStageThread_whileImageIsBuilt() {
+        // given
+        shutdown();
+        ClientServerServiceConfig config = config(1, 1);
+        config.getScheduler().setBuilds(2);
+        config.getScheduler().setRuns(2);
+        pipeline(config);
+
+        List<Consumer<String>> building = new CopyOnWriteArrayList<>();
+        when(git.clone(anyString(), any(), any())).thenReturn(true);
+        when(solutionManager.prepare(any())).thenReturn(true);
+        when(solutionManager.build(any(), any())).thenAnswer(invocation -> {
+            building.add(invocation.getArgument(1, Consumer.class));
+            return true;
+        });
+
+        // when
+        pipeline.submit(token, REPO, sources);
+        pipeline.submit(Token.from(OTHER_SERVER_URL, SERVER_URL_PATTERN), REPO, sources);
+
+        // then
+        // the only build stage thread is free while docker builds the first image
+        verify(solutionManager, timeout(1000).times(2)).build(any(), any());
+        verify(solutionManager, never()).runContainer(any(), any());
+
+        // when
+        building.forEach(callback -> callback.accept("imageId"));
+
+        // then
+        verify(solutionManager, timeout(1000).times(2)).runContainer(any(), eq("imageId"));
+        verify(solutionManager, never()).fail(any(), any());
+    }
+}
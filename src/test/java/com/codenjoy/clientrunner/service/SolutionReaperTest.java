@@ -0,0 +1,160 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.model.TokenTest;
+import lombok.SneakyThrows;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.codenjoy.clientrunner.model.Platform.JAVA;
+import static com.codenjoy.clientrunner.model.Solution.Status.FINISHED;
+import static com.codenjoy.clientrunner.model.Solution.Status.RUNNING;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.*;
+
+public class SolutionReaperTest {
+
+    private Path root;
+    private ClientServerServiceConfig.Retention config;
+    private SolutionRegistry solutions;
+    private ResourceSampler sampler;
+    private SolutionJournal journal;
+    private SolutionReaper reaper;
+    private Token token;
+    private int ids;
+
+    @BeforeMethod
+    @SneakyThrows
+    public void setup() {
+        root = Files.createDirectories(Path.of("./target/testSolutionReaper-" +
+                new Random().nextInt(Integer.MAX_VALUE)));
+
+        ClientServerServiceConfig.SolutionFolder folder = new ClientServerServiceConfig.SolutionFolder();
+        folder.setPath(root.toString());
+        config = new ClientServerServiceConfig.Retention();
+        config.setIntervalSec(3600);
+        config.setKeepPerPlayer(2);
+        config.setMaxAgeMin(60);
+        config.setSizeLimitMB(1000);
+        ClientServerServiceConfig serviceConfig = new ClientServerServiceConfig();
+        serviceConfig.setSolutionFolder(folder);
+        serviceConfig.setRetention(config);
+
+        solutions = new SolutionRegistry();
+        sampler = mock(ResourceSampler.class);
+        journal = mock(SolutionJournal.class);
+        reaper = new SolutionReaper(serviceConfig, solutions, sampler, journal);
+        reaper.init();
+        token = TokenTest.generateValidToken();
+    }
+
+    @AfterMethod
+    @SneakyThrows
+    public void cleanup() {
+        reaper.shutdown();
+        FileUtils.deleteDirectory(root.toFile());
+        FileUtils.deleteDirectory(archive().toFile());
+    }
+
+    private Path archive() {
+        return root.resolveSibling(root.getFileName() + "-archive");
+    }
+
+    @SneakyThrows
+    private File folder(String player, String time) {
+        Path folder = Files.createDirectories(root.resolve(player).resolve(TokenTest.CODE).resolve(time));
+        Files.writeString(folder.resolve("build.log"), "0123456789");
+        return folder.toFile();
+    }
+
+    private Solution solution(String time, Solution.Status status, int finishedMinutesAgo) {
+        Solution solution = Solution.restore(token, folder(token.getPlayerId(), time), JAVA, status);
+        solution.setId(++ids);
+        solution.setFinished(LocalDateTime.now().minusMinutes(finishedMinutesAgo));
+        solutions.add(solution);
+        return solution;
+    }
+
+    @Test
+    public void shouldKeepLastSolutionsOfPlayer() {
+        // given
+        Solution oldest = solution("1", FINISHED, 30);
+        Solution previous = solution("2", FINISHED, 20);
+        Solution last = solution("3", FINISHED, 10);
+
+        // when
+        reaper.reap();
+
+        // then
+        assertEquals(solutions.size(), 2);
+        assertFalse(oldest.getSources().exists());
+        assertTrue(previous.getSources().exists());
+        assertTrue(last.getSources().exists());
+        verify(sampler).evict(oldest);
+        verify(journal).remove(oldest);
+        assertEquals(reaper.getRemoved(), 1);
+        assertEquals(reaper.getReclaimedBytes(), 10);
+    }
+
+    @Test
+    public void shouldNeverRemoveActiveSolutions() {
+        // given
+        Solution running = solution("1", RUNNING, 120);
+        config.setKeepPerPlayer(0);
+        config.setSizeLimitMB(0);
+
+        // when
+        reaper.reap();
+
+        // then
+        assertEquals(solutions.size(), 1);
+        assertTrue(running.getSources().exists());
+        assertEquals(reaper.getRemoved(), 0);
+    }
+
+    @Test
+    public void shouldRemoveFoldersLeftFromPreviousRun_whenTooOld() {
+        // given
+        File old = folder("Luigi", "1");
+        old.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+        File fresh = folder("Peach", "2");
+
+        // when
+        reaper.reap();
+
+        // then
+        assertFalse(old.exists());
+        assertFalse(root.resolve("Luigi").toFile().exists());
+        assertTrue(fresh.exists());
+        assertEquals(reaper.getReclaimedBytes(), 10);
+    }
+
+    @Test
+    public void shouldMoveFolderToArchive_whenArchivePathIsSet() {
+        // given
+        Path archive = archive();
+        config.setArchivePath(archive.toString());
+        Solution solution = solution("1", FINISHED, 120);
+
+        // when
+        reaper.reap();
+
+        // then
+        assertFalse(solution.getSources().exists());
+        assertTrue(archive.resolve(token.getPlayerId()).resolve(TokenTest.CODE)
+                .resolve("1").resolve("build.log").toFile().exists());
+        assertEquals(solutions.size(), 0);
+    }
+}
@@ -0,0 +1,108 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.model.TokenTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.assertEquals;
+
+public class SolutionRegistryTest {
+
+    private static final String OTHER_SERVER_URL
+            = "http://5.189.144.144/codenjoy-contest/board/player/Luigi?code=111111111111";
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private SolutionRegistry registry;
+    private Token token;
+    private Token other;
+
+    @BeforeMethod
+    public void setup() {
+        registry = new SolutionRegistry();
+        token = TokenTest.generateValidToken();
+        other = Token.from(OTHER_SERVER_URL, SERVER_URL_PATTERN);
+    }
+
+    private Solution solution(Token token, int id) {
+        Solution solution = Solution.cloning(token, new File("./"));
+        solution.setId(id);
+        return solution;
+    }
+
+    private String ids(Token token) {
+        return registry.get(token).stream()
+                .map(solution -> String.valueOf(solution.getId()))
+                .collect(Collectors.joining(","));
+    }
+
+    @Test
+    public void shouldGetPlayerSolutions_orderedById() {
+        // when
+        registry.add(solution(token, 3));
+        registry.add(solution(other, 2));
+        registry.add(solution(token, 1));
+
+        // then
+        assertEquals(ids(token), "1,3");
+        assertEquals(ids(other), "2");
+        assertEquals(registry.size(), 3);
+    }
+
+    @Test
+    public void shouldGetSolutionById_onlyForItsPlayer() {
+        // given
+        registry.add(solution(token, 1));
+
+        // when then
+        assertEquals(registry.get(token, 1).map(Solution::getId), Optional.of(1));
+        assertEquals(registry.get(other, 1), Optional.empty());
+        assertEquals(registry.get(token, 2), Optional.empty());
+    }
+
+    @Test
+    public void shouldRemoveSolution() {
+        // given
+        registry.add(solution(token, 1));
+        registry.add(solution(token, 2));
+
+        // when
+        registry.remove(solution(token, 1));
+
+        // then
+        assertEquals(ids(token), "2");
+        assertEquals(registry.get(token, 1), Optional.empty());
+    }
+
+    @Test
+    public void shouldKeepAllSolutions_whenAddConcurrently() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // when
+        IntStream.rangeClosed(1, 1000).forEach(id ->
+                executor.execute(() -> registry.add(solution(id % 2 == 0 ? token : other, id))));
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // then
+        assertEquals(registry.size(), 1000);
+        assertEquals(registry.get(token).size(), 500);
+        assertEquals(registry.get(other).size(), 500);
+        assertEquals(ids(token), IntStream.rangeClosed(1, 1000)
+                .filter(id -> id % 2 == 0)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(",")));
+    }
+}
@@ -0,0 +1,119 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Token;
+import com.codenjoy.clientrunner.model.TokenTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class SubmissionDebouncerTest {
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private static final String OTHER_SERVER_URL
+            = "http://5.189.144.144/codenjoy-contest/board/player/Luigi?code=111111111111";
+
+    private ClientServerServiceConfig config;
+    private PlayerExecutor players;
+    private SubmissionDebouncer debouncer;
+    private Token token;
+    private List<String> started;
+
+    @BeforeMethod
+    public void setup() {
+        config = new ClientServerServiceConfig();
+        config.setDebounce(new ClientServerServiceConfig.Debounce());
+        config.getDebounce().setWindowMs(200);
+        config.setPlayers(new ClientServerServiceConfig.Players());
+        config.getPlayers().setThreads(2);
+        players = new PlayerExecutor(config);
+        players.init();
+        debouncer = new SubmissionDebouncer(config, players);
+        debouncer.init();
+        token = TokenTest.generateValidToken();
+        started = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        debouncer.shutdown();
+        players.shutdown();
+    }
+
+    @Test
+    public void shouldStartLastSubmissionOnly_whenSubmittedWithinWindow() {
+        // given
+        Runnable last = mock(Runnable.class);
+
+        // when
+        debouncer.submit(token, () -> started.add("first"));
+        debouncer.submit(token, () -> started.add("second"));
+        debouncer.submit(token, last);
+
+        // then
+        verify(last, timeout(1000)).run();
+        assertEquals(started, List.of());
+        assertEquals(debouncer.getSubmitted(), 3);
+        assertEquals(debouncer.getCoalesced(), 2);
+        assertEquals(debouncer.getPending(), 0);
+    }
+
+    @Test
+    public void shouldRunTaskInPlayerPool_notOnTimerThread() {
+        // given
+        Runnable done = mock(Runnable.class);
+
+        // when
+        debouncer.submit(token, () -> {
+            started.add(Thread.currentThread().getName());
+            done.run();
+        });
+
+        // then
+        verify(done, timeout(1000)).run();
+        assertEquals(started.size(), 1);
+        assertTrue(started.get(0).startsWith("player-"));
+    }
+
+    @Test
+    public void shouldNotCoalesceSubmissions_ofDifferentPlayers() {
+        // given
+        Runnable first = mock(Runnable.class);
+        Runnable other = mock(Runnable.class);
+
+        // when
+        debouncer.submit(token, first);
+        debouncer.submit(Token.from(OTHER_SERVER_URL, SERVER_URL_PATTERN), other);
+
+        // then
+        verify(first, timeout(1000)).run();
+        verify(other, timeout(1000)).run();
+        assertEquals(debouncer.getCoalesced(), 0);
+    }
+
+    @Test
+    public void shouldStartAtOnce_whenWindowIsZero() {
+        // given
+        config.getDebounce().setWindowMs(0);
+        Runnable task = mock(Runnable.class);
+
+        // when
+        debouncer.submit(token, task);
+        debouncer.submit(token, task);
+
+        // then
+        verify(task, timeout(1000).times(2)).run();
+        assertEquals(debouncer.getCoalesced(), 0);
+    }
+}
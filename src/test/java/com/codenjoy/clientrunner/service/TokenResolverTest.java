@@ -0,0 +1,75 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Token;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static com.codenjoy.clientrunner.ExceptionAssert.expectThrows;
+import static com.codenjoy.clientrunner.model.TokenTest.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class TokenResolverTest {
+
+    private static final String SERVER_URL_PATTERN
+            = "^https?://[0-9A-Za-z_.\\-:]+/codenjoy-contest/board/player/([\\w]+)\\?code=([\\w]+)";
+
+    private static final String OTHER_SERVER_URL
+            = "http://5.189.144.144/codenjoy-contest/board/player/Luigi?code=111111111111";
+
+    private TokenResolver resolver;
+
+    @BeforeMethod
+    public void setup() {
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setServerRegex(SERVER_URL_PATTERN);
+        config.setTokens(new ClientServerServiceConfig.Tokens());
+        config.getTokens().setCacheSize(1);
+
+        resolver = new TokenResolver(config);
+        resolver.init();
+    }
+
+    @Test
+    public void shouldReturnCachedToken_whenSameServerUrlResolvedAgain() {
+        // given
+        Token first = resolver.resolve(VALID_SERVER_URL);
+
+        // when
+        Token second = resolver.resolve(VALID_SERVER_URL);
+
+        // then
+        assertSame(second, first);
+        assertEquals(second.getPlayerId(), PLAYER_ID);
+        assertEquals(second.getCode(), CODE);
+        assertEquals(resolver.getHits(), 1);
+        assertEquals(resolver.getMisses(), 1);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedToken_whenCacheIsFull() {
+        // given
+        resolver.resolve(VALID_SERVER_URL);
+
+        // when
+        resolver.resolve(OTHER_SERVER_URL);
+        resolver.resolve(VALID_SERVER_URL);
+
+        // then
+        assertEquals(resolver.size(), 1);
+        assertEquals(resolver.getHits(), 0);
+        assertEquals(resolver.getMisses(), 3);
+    }
+
+    @Test
+    public void shouldThrowException_whenInvalidServerUrlResolved() {
+        // when
+        expectThrows(IllegalArgumentException.class,
+                "Given invalid server URL: 'Invalid server URL' is not match",
+                () -> resolver.resolve("Invalid server URL"));
+
+        // then
+        assertEquals(resolver.size(), 0);
+    }
+}
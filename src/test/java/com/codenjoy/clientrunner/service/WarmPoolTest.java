@@ -0,0 +1,137 @@
+package com.codenjoy.clientrunner.service;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.codenjoy.clientrunner.service.facade.DockerService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static com.codenjoy.clientrunner.model.Platform.JAVA;
+import static com.codenjoy.clientrunner.model.Platform.PYTHON;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+public class WarmPoolTest {
+
+    private DockerService docker;
+    private ImageCache cache;
+    private WarmPool pool;
+
+    @BeforeMethod
+    public void setup() {
+        docker = mock(DockerService.class);
+        when(docker.createIdleContainer(anyString(), any()))
+                .thenAnswer(invocation -> "container-" + invocation.getArgument(0));
+        when(docker.claim(anyString())).thenReturn(true);
+        when(docker.hasRoom(anyString())).thenReturn(true);
+        cache = mock(ImageCache.class);
+        when(cache.contains(anyString())).thenReturn(true);
+
+        DockerConfig.WarmPool config = new DockerConfig.WarmPool();
+        config.setSize(1);
+        config.setIdleTimeoutSec(3600);
+        DockerConfig dockerConfig = new DockerConfig();
+        dockerConfig.setWarmPool(config);
+
+        pool = new WarmPool(dockerConfig, docker, cache);
+        pool.init();
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldTakeWarmContainerOnce_whenImageRefilled() {
+        // given
+        pool.refill(JAVA, "image1", null);
+        verify(docker, timeout(1000)).createIdleContainer(eq("image1"), any());
+
+        // when
+        Optional<String> first = pool.take("image1");
+        Optional<String> second = pool.take("image1");
+
+        // then
+        assertEquals(first, Optional.of("container-image1"));
+        assertEquals(second, Optional.empty());
+    }
+
+    @Test
+    public void shouldNotCreateContainer_whenImageIsNotCached() {
+        // given
+        when(cache.contains("image1")).thenReturn(false);
+
+        // when
+        pool.refill(JAVA, "image1", null);
+
+        // then
+        verify(docker, after(100).never()).createIdleContainer(anyString(), any());
+        assertEquals(pool.take("image1"), Optional.empty());
+    }
+
+    @Test
+    public void shouldNotCreateContainer_whenHostOfImageIsFull() {
+        // given
+        when(docker.hasRoom("image1")).thenReturn(false);
+
+        // when
+        pool.refill(JAVA, "image1", null);
+
+        // then
+        verify(docker, after(100).never()).createIdleContainer(anyString(), any());
+        assertEquals(pool.take("image1"), Optional.empty());
+    }
+
+    @Test
+    public void shouldRemoveEldestContainer_whenPlatformLimitExceeded() {
+        // given
+        pool.refill(JAVA, "image1", null);
+        pool.refill(PYTHON, "image2", null);
+
+        // when
+        pool.refill(JAVA, "image3", null);
+
+        // then
+        verify(docker, timeout(1000)).removeContainer("container-image1");
+        verify(docker, never()).removeContainer("container-image2");
+        assertEquals(pool.size(), 2);
+        assertEquals(pool.take("image3"), Optional.of("container-image3"));
+    }
+
+    @Test
+    public void shouldRemoveContainer_whenImageIsRemovedFromCache() {
+        // given
+        pool.refill(JAVA, "image1", null);
+        verify(docker, timeout(1000)).createIdleContainer(eq("image1"), any());
+        when(cache.contains("image1")).thenReturn(false);
+
+        // when
+        pool.expire();
+
+        // then
+        verify(docker).removeContainer("container-image1");
+        assertEquals(pool.size(), 0);
+    }
+
+    @Test
+    public void shouldRemoveContainer_whenItsHostIsFullWhenTaken() {
+        // given
+        pool.refill(JAVA, "image1", null);
+        verify(docker, timeout(1000)).createIdleContainer(eq("image1"), any());
+        when(docker.claim("container-image1")).thenReturn(false);
+
+        // when
+        Optional<String> taken = pool.take("image1");
+
+        // then
+        assertEquals(taken, Optional.empty());
+        verify(docker).removeContainer("container-image1");
+        assertEquals(pool.size(), 0);
+    }
+}
@@ -0,0 +1,132 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.codenjoy.clientrunner.model.Platform;
+import lombok.SneakyThrows;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+
+public class BuildContextTest {
+
+    private Path sources;
+
+    @BeforeMethod
+    @SneakyThrows
+    public void setup() {
+        sources = Files.createDirectories(Path.of("./target/testBuildContext-" +
+                new Random().nextInt(Integer.MAX_VALUE)));
+        Files.writeString(sources.resolve("pom.xml"), "<project/>");
+        Files.createDirectories(sources.resolve("src/main"));
+        Files.writeString(sources.resolve("src/main/Main.java"), "class Main {}");
+        Files.writeString(sources.resolve("Dockerfile"), "FROM player");
+        Files.writeString(sources.resolve("build.log"), "log");
+        Files.writeString(sources.resolve("build.log.idx"), "");
+    }
+
+    @SneakyThrows
+    private Map<String, String> untar(InputStream in) {
+        Map<String, String> result = new LinkedHashMap<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(in)) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                result.put(entry.getName(), new String(tar.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldSkipGeneratedFiles_andPlayerDockerfile() {
+        // when
+        BuildContext context = BuildContext.of(sources.toFile(),
+                "FROM platform".getBytes(), path -> false);
+
+        // then
+        assertEquals(context.getFiles(), List.of("pom.xml", "src/main/Main.java"));
+        assertEquals(context.getExcludedFiles(), 0);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldStreamTar_withVirtualDockerfile() {
+        // given
+        BuildContext context = BuildContext.of(sources.toFile(),
+                "FROM platform".getBytes(), path -> false);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when
+        Map<String, String> entries = untar(context.stream(executor));
+
+        // then
+        assertEquals(entries.toString(), "{Dockerfile=FROM platform, " +
+                "pom.xml=<project/>, " +
+                "src/main/Main.java=class Main {}}");
+        assertEquals(context.getSize().get() > 0, true);
+        executor.shutdown();
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldReleaseWriter_whenStreamIsClosedBeforeTarIsRead() {
+        // given
+        // much bigger than the pipe, so the writer blocks
+        Files.write(sources.resolve("big.bin"), new byte[4 * 1024 * 1024]);
+        BuildContext context = BuildContext.of(sources.toFile(),
+                "FROM platform".getBytes(), path -> false);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        InputStream stream = context.stream(executor);
+        stream.read(new byte[1024]);
+
+        // when
+        stream.close();
+
+        // then
+        executor.shutdown();
+        assertEquals(executor.awaitTermination(5, TimeUnit.SECONDS), true);
+        assertEquals(context.getSize().isDone(), true);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldExcludePlatformPaths_andDockerignorePaths() {
+        // given
+        Files.createDirectories(sources.resolve("target/classes"));
+        Files.writeString(sources.resolve("target/classes/Main.class"), "12345");
+        Files.writeString(sources.resolve("target/app.jar"), "jar");
+        Files.writeString(sources.resolve("README.md"), "readme");
+        Files.writeString(sources.resolve(".dockerignore"), "# docs\n*.md\n!target/app.jar\n");
+        DockerIgnore excludes = new DockerIgnore(Platform.JAVA.getExcludes())
+                .addFile(sources.toFile());
+
+        // when
+        BuildContext context = BuildContext.of(sources.toFile(),
+                "FROM platform".getBytes(), excludes);
+
+        // then
+        assertEquals(context.getFiles(), List.of(".dockerignore", "pom.xml",
+                "src/main/Main.java", "target/app.jar"));
+        assertEquals(context.getExcludedFiles(), 2);
+        assertEquals(context.getExcludedBytes(), 11);
+        assertEquals(context.getIncludedBytes(), Files.size(sources.resolve(".dockerignore"))
+                + Files.size(sources.resolve("pom.xml"))
+                + Files.size(sources.resolve("src/main/Main.java"))
+                + Files.size(sources.resolve("target/app.jar"))
+                + "FROM platform".length());
+    }
+}
@@ -0,0 +1,343 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.codenjoy.clientrunner.config.DockerConfig;
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.BuildImageCmd;
+import com.github.dockerjava.api.model.BuildResponseItem;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+import com.github.dockerjava.core.DockerClientConfig;
+import lombok.SneakyThrows;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+
+public class DockerServiceTest {
+
+    private static final String FIRST = "tcp://first:2375";
+    private static final String SECOND = "tcp://second:2375";
+    private static final long MB = 1024L * 1024L;
+
+    private DockerConfig config;
+    private Map<String, DockerClient> daemons;
+    private DockerService docker;
+
+    @BeforeMethod
+    public void setup() {
+        DockerConfig.Container container = new DockerConfig.Container();
+        container.setMemoryLimitMB(512);
+        DockerConfig.Hosts hosts = new DockerConfig.Hosts();
+        hosts.setUrls(List.of(FIRST, SECOND));
+        config = new DockerConfig();
+        config.setContainer(container);
+        config.setHosts(hosts);
+
+        daemons = new HashMap<>();
+        daemon(FIRST, 8192, 0);
+        daemon(SECOND, 8192, 0);
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        if (docker != null) {
+            docker.shutdown();
+        }
+    }
+
+    private DockerClient daemon(String url, long memoryMB, int running) {
+        DockerClient client = mock(DockerClient.class, RETURNS_DEEP_STUBS);
+        when(client.infoCmd().exec().getMemTotal()).thenReturn(memoryMB * MB);
+        List<Container> containers = new ArrayList<>();
+        for (int i = 0; i < running; i++) {
+            containers.add(new Container());
+        }
+        when(client.listContainersCmd().withLabelFilter(DockerService.LABELS).exec()).thenReturn(containers);
+        when(client.createContainerCmd(anyString()).withHostConfig(any()).withLabels(anyMap()).exec().getId())
+                .thenReturn("container-" + url);
+        daemons.put(url, client);
+        return client;
+    }
+
+    private void start() {
+        docker = new DockerService(config) {
+            @Override
+            protected DockerClient client(DockerClientConfig clientConfig) {
+                return daemons.get(clientConfig.getDockerHost().toString());
+            }
+        };
+        docker.init();
+    }
+
+    @SneakyThrows
+    private String build() {
+        for (Map.Entry<String, DockerClient> daemon : daemons.entrySet()) {
+            BuildImageCmd command = mock(BuildImageCmd.class, RETURNS_SELF);
+            when(daemon.getValue().buildImageCmd(any(InputStream.class))).thenReturn(command);
+            doAnswer(invocation -> {
+                ResultCallback<BuildResponseItem> callback = invocation.getArgument(0);
+                BuildResponseItem item = mock(BuildResponseItem.class);
+                when(item.isBuildSuccessIndicated()).thenReturn(true);
+                when(item.getImageId()).thenReturn("image-" + daemon.getKey());
+                callback.onNext(item);
+                callback.onComplete();
+                return callback;
+            }).when(command).exec(any());
+        }
+        BuildContext context = mock(BuildContext.class);
+        when(context.stream(any())).thenReturn(InputStream.nullInputStream());
+
+        AtomicReference<String> result = new AtomicReference<>();
+        docker.buildImage(context, "serverUrl", mock(LogWriter.class), result::set);
+        return result.get();
+    }
+
+    @Test
+    public void shouldPlaceOnLeastLoadedHost_andCreateContainerThere() {
+        // given
+        daemon(FIRST, 8192, 2);
+        start();
+
+        // when
+        String imageId = build();
+        String containerId = docker.createContainer(imageId, null);
+
+        // then
+        assertEquals(imageId, "image-" + SECOND);
+        assertEquals(containerId, "container-" + SECOND);
+        assertEquals(docker.getHost(containerId), SECOND);
+        assertEquals(hosts(), Map.of(FIRST, 2, SECOND, 1));
+    }
+
+    @Test
+    public void shouldCountOnlyRunnerContainers_whenConnected() {
+        // given
+        DockerClient shared = daemon(FIRST, 8192, 1);
+        when(shared.listContainersCmd().exec()).thenReturn(List.of(new Container(), new Container()));
+
+        // when
+        start();
+
+        // then
+        assertEquals(hosts(), Map.of(FIRST, 1, SECOND, 0));
+    }
+
+    @Test
+    public void shouldMoveImage_whenItsHostIsFull() {
+        // given
+        config.getHosts().setMaxContainers(1);
+        start();
+        String imageId = build();
+        String first = docker.createContainer(imageId, null);
+        String from = docker.getHost(first);
+        String to = from.equals(FIRST) ? SECOND : FIRST;
+
+        // when
+        String second = docker.createContainer(imageId, null);
+
+        // then
+        assertEquals(docker.getHost(second), to);
+        verify(daemons.get(from)).saveImageCmd(imageId);
+        verify(daemons.get(to)).loadImageCmd(any(InputStream.class));
+        assertEquals(docker.getHost(imageId), to);
+        assertEquals(hosts(), Map.of(FIRST, 1, SECOND, 1));
+    }
+
+    @Test
+    public void shouldNotCountIdleContainer_untilClaimed() {
+        // given
+        start();
+        String imageId = build();
+        String host = docker.getHost(imageId);
+
+        // when
+        String idle = docker.createIdleContainer(imageId, null);
+
+        // then
+        assertEquals(docker.getHost(idle), host);
+        assertEquals(hosts().get(host), 0);
+
+        // when
+        boolean claimed = docker.claim(idle);
+
+        // then
+        assertEquals(claimed, true);
+        assertEquals(hosts().get(host), 1);
+
+        // when
+        docker.removeContainer(idle);
+
+        // then
+        assertEquals(hosts().get(host), 0);
+    }
+
+    @Test
+    public void shouldNotClaimIdleContainer_whenItsHostIsFull() {
+        // given
+        config.getHosts().setMaxContainers(1);
+        start();
+        String imageId = build();
+        String idle = docker.createIdleContainer(imageId, null);
+        DockerHost host = docker.getHosts().stream()
+                .filter(candidate -> candidate.getName().equals(docker.getHost(idle)))
+                .findFirst().get();
+        host.getContainers().set(1);
+
+        // when
+        boolean claimed = docker.claim(idle);
+        docker.removeContainer(idle);
+
+        // then
+        assertEquals(claimed, false);
+        // removed idle container was not load of the host
+        assertEquals(host.getContainers().get(), 1);
+    }
+
+    @Test
+    public void shouldSkipHost_whenNoMemoryForContainerLimit() {
+        // given
+        daemon(FIRST, 1024, 1);
+        daemon(SECOND, 256, 0);
+        start();
+
+        // when
+        String imageId = build();
+
+        // then
+        assertEquals(docker.getHost(imageId), FIRST);
+    }
+
+    @Test
+    public void shouldSendContainerCommands_toHostOfContainer() {
+        // given
+        start();
+        String containerId = docker.createContainer(build(), null);
+        DockerClient placed = daemons.get(docker.getHost(containerId));
+        when(placed.inspectContainerCmd(containerId).exec().getState().getRunning()).thenReturn(true);
+
+        // when
+        docker.killContainer(containerId);
+        docker.removeContainer(containerId);
+
+        // then
+        verify(placed).killContainerCmd(containerId);
+        verify(placed).removeContainerCmd(containerId);
+        daemons.values().stream()
+                .filter(client -> client != placed)
+                .forEach(client -> verify(client, never()).killContainerCmd(anyString()));
+        assertEquals(hosts(), Map.of(FIRST, 0, SECOND, 0));
+    }
+
+    @Test
+    public void shouldRouteToAssignedHost_whenContainerStartedBeforeRestart() {
+        // given
+        daemon(SECOND, 8192, 1);
+        start();
+
+        // when
+        docker.assign("old", SECOND);
+        docker.startContainer("old");
+        docker.removeContainer("old");
+
+        // then
+        verify(daemons.get(SECOND)).startContainerCmd("old");
+        verify(daemons.get(FIRST), never()).startContainerCmd(anyString());
+        assertEquals(hosts(), Map.of(FIRST, 0, SECOND, 0));
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldCloseBuildContext_whenBuildFails() {
+        // given
+        start();
+        BuildImageCmd command = mock(BuildImageCmd.class, RETURNS_SELF);
+        when(daemons.get(FIRST).buildImageCmd(any(InputStream.class))).thenReturn(command);
+        doAnswer(invocation -> {
+            ResultCallback<BuildResponseItem> callback = invocation.getArgument(0);
+            callback.onError(new RuntimeException("daemon stopped reading"));
+            return callback;
+        }).when(command).exec(any());
+        BuildContext context = mock(BuildContext.class);
+        InputStream stream = mock(InputStream.class);
+        when(context.stream(any())).thenReturn(stream);
+        List<String> results = new ArrayList<>();
+
+        // when
+        docker.buildImage(context, "serverUrl", mock(LogWriter.class), results::add);
+
+        // then
+        assertEquals(results, Collections.singletonList(null));
+        verify(stream).close();
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldCompleteBuildAtOnce_andIgnoreDaemon_whenCancelled() {
+        // given
+        daemon(SECOND, 8192, 1);
+        start();
+        BuildImageCmd command = mock(BuildImageCmd.class, RETURNS_SELF);
+        when(daemons.get(FIRST).buildImageCmd(any(InputStream.class))).thenReturn(command);
+        AtomicReference<ResultCallback<BuildResponseItem>> daemon = new AtomicReference<>();
+        doAnswer(invocation -> {
+            // build is in progress until the daemon completes it
+            daemon.set(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        }).when(command).exec(any());
+        BuildContext context = mock(BuildContext.class);
+        when(context.stream(any())).thenReturn(InputStream.nullInputStream());
+        LogWriter writer = mock(LogWriter.class);
+        List<String> results = new ArrayList<>();
+        Closeable build = docker.buildImage(context, "serverUrl", writer, results::add);
+
+        // when
+        build.close();
+        daemon.get().onComplete();
+
+        // then
+        assertEquals(results, Collections.singletonList(null));
+        verify(writer).write("Build cancelled\n");
+        verify(writer).close();
+        assertEquals(docker.getHosts().get(0).getBuilds().get(), 0);
+    }
+
+    @Test
+    public void shouldSkipFrame_loggedBeforeSince_andStripTimestamp() {
+        // given
+        long since = Instant.parse("2021-01-01T10:00:00.500Z").toEpochMilli();
+
+        // when then
+        assertEquals(DockerService.since(frame("2021-01-01T10:00:00.400000000Z line"), since), null);
+        assertEquals(DockerService.since(frame("2021-01-01T10:00:00.500000000Z line"), since), null);
+        assertEquals(DockerService.since(frame("2021-01-01T10:00:00.600000000Z line"), since).toString(),
+                "STDOUT: line");
+        assertEquals(DockerService.since(frame("no timestamp"), since).toString(),
+                "STDOUT: no timestamp");
+    }
+
+    private static Frame frame(String payload) {
+        return new Frame(StreamType.STDOUT, payload.getBytes(UTF_8));
+    }
+
+    private Map<String, Integer> hosts() {
+        Map<String, Integer> result = new HashMap<>();
+        for (DockerHost host : docker.getHosts()) {
+            result.put(host.getName(), host.getContainers().get());
+        }
+        return result;
+    }
+}
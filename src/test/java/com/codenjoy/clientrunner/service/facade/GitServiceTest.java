@@ -0,0 +1,255 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import lombok.SneakyThrows;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+public class GitServiceTest {
+
+    private Path root;
+    private Git origin;
+    private GitService git;
+
+    @BeforeMethod
+    @SneakyThrows
+    public void setup() {
+        root = Files.createDirectories(Path.of("./target/testGit-" +
+                new Random().nextInt(Integer.MAX_VALUE)));
+        origin = Git.init().setDirectory(root.resolve("origin").toFile()).call();
+
+        ClientServerServiceConfig.Mirrors mirrors = new ClientServerServiceConfig.Mirrors();
+        mirrors.setPath(root.resolve("mirrors").toString());
+        mirrors.setSizeLimitMB(100);
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setMirrors(mirrors);
+        git = new GitService(config);
+        git.init();
+    }
+
+    @SneakyThrows
+    private void commit(String file, String content) {
+        Path path = origin.getRepository().getWorkTree().toPath().resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+        origin.add().addFilepattern(".").call();
+        origin.commit().setMessage("add " + file).call();
+    }
+
+    @SneakyThrows
+    private void commitTree(String folder, String file, String content) {
+        Repository repository = origin.getRepository();
+        ObjectInserter inserter = repository.newObjectInserter();
+        try {
+            ObjectId blob = inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+            TreeFormatter inner = new TreeFormatter();
+            inner.append(file, FileMode.REGULAR_FILE, blob);
+            TreeFormatter outer = new TreeFormatter();
+            outer.append(folder, FileMode.TREE, inserter.insert(inner));
+
+            PersonIdent author = new PersonIdent("player", "player@codenjoy.com");
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(inserter.insert(outer));
+            commit.setAuthor(author);
+            commit.setCommitter(author);
+            commit.setMessage("add " + folder + "/" + file);
+            ObjectId id = inserter.insert(commit);
+            inserter.flush();
+
+            RefUpdate update = repository.updateRef(Constants.HEAD);
+            update.setNewObjectId(id);
+            update.forceUpdate();
+        } finally {
+            inserter.release();
+        }
+    }
+
+    private String uri() {
+        return origin.getRepository().getDirectory().getAbsolutePath();
+    }
+
+    private int mirrors() {
+        String[] names = root.resolve("mirrors").toFile().list();
+        return (names == null) ? 0 : names.length;
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldCheckoutTipWithoutHistory_whenClone() {
+        // given
+        commit("src/main.js", "console.log('hello')");
+        File directory = root.resolve("solution").toFile();
+
+        // when
+        boolean cloned = git.clone(uri(), directory);
+
+        // then
+        assertEquals(cloned, true);
+        assertEquals(Files.readString(directory.toPath().resolve("src/main.js")),
+                "console.log('hello')");
+        assertEquals(new File(directory, ".git").exists(), false);
+        assertEquals(mirrors(), 1);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldFetchNewCommits_whenCloneAgain() {
+        // given
+        commit("main.py", "print(1)");
+        git.clone(uri(), root.resolve("solution1").toFile());
+        commit("main.py", "print(2)");
+        File directory = root.resolve("solution2").toFile();
+
+        // when
+        git.clone(uri(), directory);
+
+        // then
+        assertEquals(Files.readString(directory.toPath().resolve("main.py")), "print(2)");
+        assertEquals(mirrors(), 1);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldStopCheckout_whenCancelledBetweenFiles() {
+        // given
+        commit("main.py", "print(1)");
+        commit("src/lib.py", "print(2)");
+        File directory = root.resolve("solution").toFile();
+
+        // when
+        // cancelled as soon as the first file is checked out
+        boolean cloned = git.clone(uri(), directory, directory::exists);
+
+        // then
+        assertEquals(cloned, false);
+        assertEquals(directory.toPath().resolve("main.py").toFile().exists(), true);
+        assertEquals(directory.toPath().resolve("src/lib.py").toFile().exists(), false);
+        // fetched mirror is kept for the next clone
+        assertEquals(mirrors(), 1);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldCloneMirrorAgain_whenFetchFails() {
+        // given
+        commit("main.py", "print(1)");
+        git.clone(uri(), root.resolve("solution1").toFile());
+        commit("main.py", "print(2)");
+        File[] mirror = root.resolve("mirrors").toFile().listFiles();
+        Files.writeString(mirror[0].toPath().resolve("config"), "[core");
+        File directory = root.resolve("solution2").toFile();
+
+        // when
+        boolean cloned = git.clone(uri(), directory);
+
+        // then
+        assertEquals(cloned, true);
+        assertEquals(Files.readString(directory.toPath().resolve("main.py")), "print(2)");
+        assertEquals(mirrors(), 1);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldSkipSymlinks_whenClone() {
+        // given
+        Path link = origin.getRepository().getWorkTree().toPath().resolve("passwd");
+        Files.createSymbolicLink(link, Path.of("/etc/passwd"));
+        commit("main.py", "print(1)");
+        File directory = root.resolve("solution").toFile();
+
+        // when
+        boolean cloned = git.clone(uri(), directory);
+
+        // then
+        assertEquals(cloned, true);
+        assertEquals(Files.readString(directory.toPath().resolve("main.py")), "print(1)");
+        assertEquals(Files.exists(directory.toPath().resolve("passwd"), LinkOption.NOFOLLOW_LINKS), false);
+    }
+
+    @Test
+    public void shouldNotCheckout_outsideOfSolutionFolder() {
+        // given
+        commitTree("..", "main.py", "print(1)");
+        File directory = root.resolve("solution").toFile();
+
+        // when
+        boolean cloned = git.clone(uri(), directory);
+
+        // then
+        assertEquals(cloned, false);
+        assertEquals(root.resolve("main.py").toFile().exists(), false);
+    }
+
+    @Test
+    public void shouldNotCheckout_intoGitMetadata() {
+        // given
+        commitTree(".GIT", "config", "[core]");
+        File directory = root.resolve("solution").toFile();
+
+        // when
+        boolean cloned = git.clone(uri(), directory);
+
+        // then
+        assertEquals(cloned, false);
+        assertEquals(directory.toPath().resolve(".GIT/config").toFile().exists(), false);
+    }
+
+    @Test
+    public void shouldNotClone_whenRepositoryNotExists() {
+        // when
+        boolean cloned = git.clone(root.resolve("unknown").toAbsolutePath().toString(),
+                root.resolve("solution").toFile());
+
+        // then
+        assertEquals(cloned, false);
+        assertEquals(mirrors(), 0);
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldRemoveMirrors_whenSizeLimitExceeded() {
+        // given
+        commit("main.py", "print(1)");
+        git.clone(uri(), root.resolve("solution1").toFile());
+
+        Git other = Git.init().setDirectory(root.resolve("other").toFile()).call();
+        Files.writeString(root.resolve("other/main.py"), "print(2)");
+        other.add().addFilepattern(".").call();
+        other.commit().setMessage("add main.py").call();
+
+        ClientServerServiceConfig.Mirrors mirrors = new ClientServerServiceConfig.Mirrors();
+        mirrors.setPath(root.resolve("mirrors").toString());
+        mirrors.setSizeLimitMB(0);
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setMirrors(mirrors);
+        git = new GitService(config);
+        git.init();
+
+        // when
+        git.clone(other.getRepository().getDirectory().getAbsolutePath(),
+                root.resolve("solution2").toFile());
+
+        // then
+        assertEquals(Files.readString(root.resolve("solution2/main.py")), "print(2)");
+        assertEquals(mirrors(), 0);
+    }
+}
@@ -0,0 +1,267 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.TokenTest;
+import lombok.SneakyThrows;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+
+public class LogFlusherTest {
+
+    private ClientServerServiceConfig.Logs logs;
+    private LogFlusher flusher;
+    private Solution solution;
+    private File log;
+    private List<String> published;
+    private LogListener listener;
+
+    @BeforeMethod
+    @SneakyThrows
+    public void setup() {
+        logs = new ClientServerServiceConfig.Logs();
+        logs.setQueue(100);
+        logs.setBufferSize(256);
+        logs.setFlushIntervalMs(10);
+        logs.setWhenFull(ClientServerServiceConfig.Logs.WhenFull.BLOCK);
+        logs.setBlockTimeoutMs(1000);
+        logs.setCloseTimeoutMs(1000);
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setLogs(logs);
+        flusher = new LogFlusher(config);
+
+        Path path = Files.createDirectories(Path.of("./target/testLogFlusher-" +
+                new Random().nextInt(Integer.MAX_VALUE)));
+        solution = Solution.from(TokenTest.generateValidToken(), path.toFile());
+        log = new File(solution.getSources() + LogWriter.RUNTIME_LOG);
+        published = new CopyOnWriteArrayList<>();
+        listener = (solution, type, line, text) -> published.add(line + ":" + text);
+    }
+
+    @AfterMethod
+    @SneakyThrows
+    public void cleanup() {
+        flusher.shutdown();
+        FileUtils.deleteDirectory(solution.getSources());
+    }
+
+    @SneakyThrows
+    private String content() {
+        return log.exists() ? Files.readString(log.toPath(), UTF_8) : "";
+    }
+
+    @SneakyThrows
+    private String awaitContent(String expected) {
+        for (int i = 0; i < 50 && !content().equals(expected); i++) {
+            Thread.sleep(10);
+        }
+        return content();
+    }
+
+    @Test
+    public void shouldDropChunk_whenQueueIsFull_andDrop() {
+        // given
+        logs.setQueue(1);
+        logs.setWhenFull(ClientServerServiceConfig.Logs.WhenFull.DROP);
+        flusher.open();
+        LogWriter writer = flusher.writer(solution, false, listener);
+
+        // when
+        writer.write("first");
+        writer.write("second");
+
+        // then
+        assertEquals(flusher.getDropped(), 1);
+        assertEquals(published, List.of("0:first"));
+
+        // when
+        flusher.start();
+        writer.close();
+
+        // then
+        assertEquals(content(), "first\n");
+    }
+
+    @Test
+    public void shouldWaitForQueue_whenQueueIsFull_andBlock() {
+        // given
+        logs.setQueue(1);
+        logs.setBlockTimeoutMs(5000);
+        flusher.open();
+        LogWriter writer = flusher.writer(solution, false, listener);
+        writer.write("first");
+
+        // when
+        CompletableFuture.runAsync(() -> {
+            sleep(100);
+            flusher.start();
+        });
+        writer.write("second");
+        writer.close();
+
+        // then
+        assertEquals(flusher.getDropped(), 0);
+        assertEquals(published, List.of("0:first", "1:second"));
+        assertEquals(content(), "first\nsecond\n");
+    }
+
+    @Test
+    public void shouldDropChunk_whenQueueIsFullLongerThanBlockTimeout_andBlock() {
+        // given
+        logs.setQueue(1);
+        logs.setBlockTimeoutMs(100);
+        flusher.open();
+        LogWriter writer = flusher.writer(solution, false, listener);
+        writer.write("first");
+
+        // when
+        long startedAt = System.nanoTime();
+        writer.write("second");
+
+        // then
+        assertEquals(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) >= 100, true);
+        assertEquals(flusher.getDropped(), 1);
+        assertEquals(published, List.of("0:first"));
+    }
+
+    @Test
+    public void shouldNotWaitLongerThanCloseTimeout_whenQueueIsFull() {
+        // given
+        logs.setQueue(1);
+        logs.setWhenFull(ClientServerServiceConfig.Logs.WhenFull.DROP);
+        logs.setCloseTimeoutMs(100);
+        flusher.open();
+        LogWriter writer = flusher.writer(solution, false, listener);
+        writer.write("first");
+
+        // when
+        long startedAt = System.nanoTime();
+        writer.close();
+
+        // then
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        assertEquals(waited >= 100 && waited < 1000, true);
+    }
+
+    @Test
+    public void shouldFlushBuffer_whenItExceedsBufferSize() {
+        // given
+        logs.setBufferSize(10);
+        logs.setFlushIntervalMs(1000);
+        flusher.init();
+        LogWriter writer = flusher.writer(solution, false, listener);
+
+        // when
+        writer.write("first");
+        writer.write("second");
+
+        // then
+        // flushed long before the interval passes
+        assertEquals(awaitContent("first\nsecond\n"), "first\nsecond\n");
+        writer.close();
+    }
+
+    @Test
+    public void shouldFlushBuffer_whenFlushIntervalPasses() {
+        // given
+        logs.setBufferSize(1024 * 1024);
+        logs.setFlushIntervalMs(100);
+        flusher.init();
+        LogWriter writer = flusher.writer(solution, false, listener);
+
+        // when
+        writer.write("first");
+
+        // then
+        assertEquals(awaitContent("first\n"), "first\n");
+        writer.close();
+    }
+
+    @Test
+    public void shouldNotWrite_whenWriterIsClosed() {
+        // given
+        flusher.init();
+        LogWriter writer = flusher.writer(solution, false, listener);
+        writer.write("first");
+        writer.close();
+
+        // when
+        writer.write("second");
+        writer.close();
+
+        // then
+        assertEquals(published, List.of("0:first"));
+        assertEquals(content(), "first\n");
+    }
+
+    @Test
+    public void shouldShareLogFile_betweenWritersOfSameSolution() {
+        // given
+        flusher.init();
+        LogWriter first = flusher.writer(solution, false, LogListener.NONE);
+        LogWriter second = flusher.writer(solution, false, LogListener.NONE);
+
+        // when
+        first.write("first");
+        second.write("second");
+        first.close();
+        second.write("third");
+        second.close();
+
+        // then
+        assertEquals(content(), "first\nsecond\nthird\n");
+
+        // when
+        LogWriter next = flusher.writer(solution, false, listener);
+        next.write("fourth");
+        next.close();
+
+        // then
+        assertEquals(published, List.of("3:fourth"));
+        assertEquals(content(), "first\nsecond\nthird\nfourth\n");
+    }
+
+    @Test
+    public void shouldNotReuseLineNumbers_whenWriterOpened_beforeQueuedLinesFlushed() {
+        // given
+        flusher.open();
+        LogWriter first = flusher.writer(solution, false, listener);
+        first.write("first");
+        first.write("second");
+
+        // when
+        LogWriter second = flusher.writer(solution, false, listener);
+        second.write("third");
+        first.write("fourth");
+
+        // then
+        assertEquals(published, List.of("0:first", "1:second", "2:third", "3:fourth"));
+
+        // when
+        flusher.start();
+        first.close();
+        second.close();
+
+        // then
+        assertEquals(content(), "first\nsecond\nthird\nfourth\n");
+    }
+
+    @SneakyThrows
+    private static void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+}
@@ -0,0 +1,149 @@
+package com.codenjoy.clientrunner.service.facade;
+
+import com.codenjoy.clientrunner.config.ClientServerServiceConfig;
+import com.codenjoy.clientrunner.model.Solution;
+import com.codenjoy.clientrunner.model.TokenTest;
+import lombok.SneakyThrows;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.assertEquals;
+
+public class LogReaderTest {
+
+    private Solution solution;
+    private File log;
+    private LogFlusher flusher;
+
+    @BeforeMethod
+    @SneakyThrows
+    public void setup() {
+        ClientServerServiceConfig.Logs logs = new ClientServerServiceConfig.Logs();
+        logs.setQueue(100);
+        logs.setBufferSize(256);
+        logs.setFlushIntervalMs(10);
+        logs.setWhenFull(ClientServerServiceConfig.Logs.WhenFull.BLOCK);
+        logs.setBlockTimeoutMs(1000);
+        logs.setCloseTimeoutMs(1000);
+        ClientServerServiceConfig config = new ClientServerServiceConfig();
+        config.setLogs(logs);
+        flusher = new LogFlusher(config);
+        flusher.init();
+
+        Path path = Path.of("./target/testLogSources-" +
+                new Random().nextInt(Integer.MAX_VALUE));
+        path = Files.createDirectories(path);
+        Files.createFile(path.resolve("pom.xml"));
+        solution = Solution.from(TokenTest.generateValidToken(), path.toFile());
+        log = new File(solution.getSources() + LogWriter.RUNTIME_LOG);
+    }
+
+    @AfterMethod
+    @SneakyThrows
+    public void cleanup() {
+        flusher.shutdown();
+    }
+
+    private void writeLines(int from, int to) {
+        LogWriter writer = flusher.writer(solution, false, LogListener.NONE);
+        IntStream.range(from, to).forEach(i -> writer.write("line " + i));
+        writer.close();
+    }
+
+    private List<String> lines(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> "line " + i)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldIndexEveryStepLine_whenWrite() {
+        // when
+        writeLines(0, 200);
+
+        // then
+        LogIndex index = new LogIndex(log);
+        assertEquals(index.size(), 200 / LogIndex.STEP);
+        // 'line 0\n'..'line 9\n', 'line 10\n'..'line 99\n', 'line 100\n'..'line 127\n'
+        long offset = 10 * 7 + 90 * 8 + 28 * 9;
+        assertEquals(index.floor(130), new long[]{128, offset});
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldReadFromOffset_whenOffsetAnywhere() {
+        // given
+        writeLines(0, 200);
+
+        // when then
+        assertEquals(LogReader.read(log, 0), lines(0, 200));
+        assertEquals(LogReader.read(log, 63), lines(63, 200));
+        assertEquals(LogReader.read(log, 64), lines(64, 200));
+        assertEquals(LogReader.read(log, 130), lines(130, 200));
+        assertEquals(LogReader.read(log, 200), lines(200, 200));
+        assertEquals(LogReader.read(log, 250), lines(200, 200));
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldContinueIndex_whenReopenLog() {
+        // given
+        writeLines(0, 100);
+
+        // when
+        writeLines(100, 200);
+
+        // then
+        assertEquals(new LogIndex(log).size(), 200 / LogIndex.STEP);
+        assertEquals(LogReader.read(log, 150), lines(150, 200));
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldReadChunkedLines_whenBuildLog() {
+        // given
+        log = new File(solution.getSources() + LogWriter.BUILD_LOG);
+        LogWriter writer = flusher.writer(solution, true, LogListener.NONE);
+
+        // when
+        writer.write("Step 1/2");
+        writer.write(" : FROM python:3\nStep 2/2\r\n");
+        writer.write("Successfully built");
+        writer.close();
+
+        // then
+        assertEquals(LogReader.read(log, 0).toString(),
+                "[Step 1/2 : FROM python:3, Step 2/2, Successfully built]");
+        assertEquals(LogReader.read(log, 2).toString(),
+                "[Successfully built]");
+    }
+
+    @Test
+    @SneakyThrows
+    public void shouldPublishOnlyWrittenLines_andFlushOnClose() {
+        // given
+        List<String> published = new ArrayList<>();
+        LogWriter writer = flusher.writer(solution, false,
+                (s, type, line, text) -> published.add(line + ":" + text));
+
+        // when
+        writer.write("first");
+        writer.write("second");
+        writer.close();
+
+        // then
+        assertEquals(published.toString(), "[0:first, 1:second]");
+        assertEquals(LogReader.read(log, 0).toString(), "[first, second]");
+    }
+}